@@ -0,0 +1,84 @@
+package app;
+
+import app.engine.BenchBoards;
+import app.engine.Engine;
+import app.engine.ManualClock;
+import app.engine.PieceGeometry;
+import app.engine.PlayerState;
+import app.engine.Tetromino;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Planning one piece, and scoring one placement, on boards of varying size and fill. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AiBench {
+    @Param({"10x20", "16x32", "30x60"})
+    public String size;
+
+    @Param({"0", "0.5", "0.85"})
+    public double fill;
+
+    private SimpleAI greedy, lookahead;
+    private SimpleAI.Snapshot snap;
+    private BoardEvaluator eval;
+    private PieceGeometry[] geo;
+    private int[] rows, cols;
+    private int next;
+
+    @Setup
+    public void setup() {
+        int[] s = BenchBoards.size(size);
+        Engine engine = new Engine(new ManualClock(), s[0], s[1], 1, 1, 42);
+        engine.start();
+        PlayerState p = engine.player(0);
+        BenchBoards.fill(p.board(), fill, 0, 42);
+        greedy = new SimpleAI(null, Weights.DEFAULT, new Random(1));
+        lookahead = new SimpleAI(null, Weights.DEFAULT, new Random(1));
+        lookahead.configure(2, 8);
+        snap = SimpleAI.snapshot(p, 2);
+
+        // every straight drop of a T, cycled through by evaluateAfterPlace
+        eval = new BoardEvaluator();
+        eval.load(p.board());
+        geo = new PieceGeometry[4 * s[0]];
+        rows = new int[geo.length];
+        cols = new int[geo.length];
+        int n = 0;
+        for (int rot = 0; rot < 4; rot++) {
+            PieceGeometry g = Tetromino.T.geometry(rot);
+            for (int col = -g.minCol(); col <= s[0] - 1 - g.maxCol(); col++) {
+                int row = eval.dropRow(g, col);
+                if (row == Integer.MIN_VALUE) continue;
+                geo[n] = g;
+                rows[n] = row;
+                cols[n++] = col;
+            }
+        }
+        geo = java.util.Arrays.copyOf(geo, n);
+    }
+
+    @Benchmark
+    public SimpleAI.Plan choosePlanGreedy() {
+        return greedy.plan(snap);
+    }
+
+    @Benchmark
+    public SimpleAI.Plan choosePlanLookahead2() {
+        return lookahead.plan(snap);
+    }
+
+    @Benchmark
+    public int evaluateAfterPlace() {
+        int i = next;
+        next = i + 1 == geo.length ? 0 : i + 1;
+        eval.evaluate(geo[i], rows[i], cols[i]);
+        return eval.holesAfter + eval.aggHeightAfter + eval.bumpinessAfter;
+    }
+}
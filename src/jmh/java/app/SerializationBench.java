@@ -0,0 +1,85 @@
+package app;
+
+import app.engine.BenchBoards;
+import app.engine.Engine;
+import app.engine.ManualClock;
+import app.engine.PlayerState;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Controller snapshot, config parsing and the high-score table. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBench {
+    static {
+        // keep HighScores.add away from the real scores.csv
+        try {
+            var f = Files.createTempFile("bench-scores", ".csv");
+            f.toFile().deleteOnExit();
+            System.setProperty("tetris.scores", f.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Param({"10x20", "16x32", "30x60"})
+    public String size;
+
+    @Param({"0", "0.5", "0.85"})
+    public double fill;
+
+    private PlayerState player;
+    private String configJson;
+    private int score;
+
+    @Setup
+    public void setup() {
+        int[] s = BenchBoards.size(size);
+        Engine engine = new Engine(new ManualClock(), s[0], s[1], 1, 1, 42);
+        engine.start();
+        player = engine.player(0);
+        BenchBoards.fill(player.board(), fill, 0, 42);
+        configJson = "{\n" +
+                " \"fieldWidth\": " + s[0] + ",\n" +
+                " \"fieldHeight\": " + s[1] + ",\n" +
+                " \"blockSize\": 24,\n" +
+                " \"startLevel\": 1,\n" +
+                " \"aiLookahead\": 3,\n" +
+                " \"aiBeamWidth\": 8,\n" +
+                " \"musicEnabled\": false,\n" +
+                " \"sfxEnabled\": false,\n" +
+                " \"aiPlay\": false,\n" +
+                " \"extendedMode\": false,\n" +
+                " \"mode\": \"ONE_PLAYER\",\n" +
+                " \"player1Type\": \"HUMAN\",\n" +
+                " \"player2Type\": \"AI\",\n" +
+                " \"serverHost\": \"localhost\",\n" +
+                " \"serverPort\": 3000\n" +
+                "}\n";
+    }
+
+    @Benchmark
+    public String snapshotJson() {
+        return GameView.snapshotJson(1, player);
+    }
+
+    @Benchmark
+    public Map<String, String> configFlat() {
+        return JsonConfigRepository.flat(configJson);
+    }
+
+    /** Includes rewriting the table file, as the game does. */
+    @Benchmark
+    public void highScoresAdd() {
+        HighScores.add("bench", score++ % 5000);
+    }
+}
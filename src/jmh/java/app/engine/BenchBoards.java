@@ -0,0 +1,39 @@
+package app.engine;
+
+import java.util.Random;
+
+/** Seeded test boards for the benchmarks. */
+public final class BenchBoards {
+    private BenchBoards() {}
+
+    /** "10x20" style parameter to {cols, rows}. */
+    public static int[] size(String s) {
+        int x = s.indexOf('x');
+        return new int[]{Integer.parseInt(s.substring(0, x)), Integer.parseInt(s.substring(x + 1))};
+    }
+
+    /**
+     * Fills the bottom {@code fill} fraction of the rows with random cells, one gap per
+     * row at least, so nothing is clearable; the first {@code fullRows} of them are
+     * filled solid instead.
+     */
+    public static void fill(Board b, double fill, int fullRows, long seed) {
+        Random rng = new Random(seed);
+        int filled = (int) Math.round(b.rows() * fill);
+        for (int k = 0; k < filled; k++) {
+            int r = b.rows() - 1 - k;
+            int mask;
+            if (k < fullRows) {
+                mask = b.fullMask();
+            } else {
+                mask = rng.nextInt(b.fullMask() + 1) & ~(1 << rng.nextInt(b.cols()));
+            }
+            // Board only takes 4-wide piece rows
+            for (int c = 0; c < b.cols(); c += 4) {
+                int chunk = mask >>> c & 0xF;
+                if (c + 4 > b.cols()) chunk &= (1 << (b.cols() - c)) - 1;
+                if (chunk != 0) b.place(new int[]{chunk, 0, 0, 0}, r, c, 1 + rng.nextInt(7));
+            }
+        }
+    }
+}
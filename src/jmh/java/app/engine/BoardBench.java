@@ -0,0 +1,95 @@
+package app.engine;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/** Collision test, full-row scan, row clear and shape lookup on boards of varying size and fill. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBench {
+    @Param({"10x20", "16x32", "30x60"})
+    public String size;
+
+    @Param({"0", "0.5", "0.85"})
+    public double fill;
+
+    private Board board;
+    private final int[][] pieces = new int[7 * 4][];
+
+    @Setup
+    public void setup() {
+        int[] s = BenchBoards.size(size);
+        board = new Board(s[0], s[1]);
+        BenchBoards.fill(board, fill, 0, 42);
+        int i = 0;
+        for (Tetromino t : Tetromino.values()) {
+            if (t == Tetromino.NONE) continue;
+            for (int rot = 0; rot < 4; rot++) pieces[i++] = t.rowMasks(rot);
+        }
+    }
+
+    /**
+     * Boards with four full rows at the bottom for {@link #applyRowClear}, which uses
+     * each one up. A single clear takes nanoseconds, far less than JMH's per-invocation
+     * setup and timing overhead, so they come in batches: refilled between
+     * invocations, and every invocation clears the whole batch. The GC profiler's
+     * allocation figures for it include the refill.
+     */
+    @State(Scope.Thread)
+    public static class ClearBatch {
+        static final int SIZE = 256;
+        final Board[] boards = new Board[SIZE];
+        final long[] masks = new long[SIZE];
+
+        @Setup(Level.Invocation)
+        public void refill(BoardBench bench) {
+            int[] s = BenchBoards.size(bench.size);
+            for (int i = 0; i < SIZE; i++) {
+                if (boards[i] == null) boards[i] = new Board(s[0], s[1]);
+                else boards[i].clear();
+                BenchBoards.fill(boards[i], Math.max(bench.fill, 4.0 / s[1]), 4, 42 + i);
+                masks[i] = boards[i].fullRows();
+            }
+        }
+    }
+
+    /** Every piece and rotation at every column, one row above the stack. */
+    @Benchmark
+    public int canPlace() {
+        int row = board.rows() - (int) Math.round(board.rows() * fill) - 3, n = 0;
+        for (int[] p : pieces) {
+            for (int col = -2; col < board.cols(); col++) if (board.fits(p, row, col)) n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    public long scanFullRows() {
+        return board.fullRows();
+    }
+
+    /** One four-row clear; time per board. */
+    @Benchmark
+    @OperationsPerInvocation(ClearBatch.SIZE)
+    public long applyRowClear(ClearBatch batch) {
+        long h = 0;
+        for (int i = 0; i < ClearBatch.SIZE; i++) {
+            batch.boards[i].clearRows(batch.masks[i]);
+            h ^= batch.boards[i].hash();
+        }
+        return h;
+    }
+
+    @Benchmark
+    public void tetrominoShape(Blackhole bh) {
+        for (Tetromino t : Tetromino.values()) {
+            for (int rot = 0; rot < 4; rot++) bh.consume(t.shape(rot));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package app;
+
+import app.engine.Action;
+import app.engine.MoveGenerator;
+import app.engine.PlayerState;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Drives one AI player. Each spawn hands a snapshot of the board to a planner on a
+// worker thread, with the player's time budget as its deadline; the game thread keeps
+// running and, on each gravity tick, either picks up the finished plan or, once the
+// budget plus a grace period has passed, asks the fallback strategy on the spot.
+// Following a plan means re-running the move generator from the piece's current state
+// and playing the first inputs of the path, so gravity in the meantime doesn't matter.
+final class AiAgent {
+    private static final int INPUTS_PER_TICK = 2;
+    // slack on top of the budget for handing the plan back before the fallback kicks in
+    private static final long GRACE_MS = 50;
+
+    private static final ExecutorService PLANNERS = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)), r -> {
+                Thread t = new Thread(r, "ai-planner");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** Shared daemon pool for planning off the game thread. */
+    static Executor defaultExecutor() { return PLANNERS; }
+
+    private final PlayerState player;
+    private final Executor executor;
+    private final long budgetNanos;
+    private final AiStrategy planner, fallback;
+    private final MoveGenerator moves;
+
+    private SimpleAI.Plan plan;
+    // requests run one after another so the planner is never used by two threads
+    private CompletableFuture<Void> idle = CompletableFuture.completedFuture(null);
+    private CompletableFuture<SimpleAI.Plan> pending;
+    private long pendingSeq = -1, pendingGiveUp;
+    private long noPlanSeq = -1; // piece nothing could be planned for; left to gravity
+    private long fallbacks = 0, plansApplied = 0;
+
+    /**
+     * @param executor where plans are computed; {@code Runnable::run} plans inline,
+     *                 which keeps headless runs deterministic
+     * @param fallback a cheap strategy run on the game thread when a plan is late
+     * @param budgetMs thinking time per piece
+     */
+    AiAgent(PlayerState player, Executor executor, AiStrategy planner, AiStrategy fallback, long budgetMs) {
+        this.player = player;
+        this.executor = executor;
+        this.budgetNanos = budgetMs * 1_000_000L;
+        this.planner = planner;
+        this.fallback = fallback;
+        this.moves = new MoveGenerator(player.cols(), player.rows());
+    }
+
+    /** Starts planning for the piece that just spawned. */
+    void onSpawn() {
+        if (player.isDead() || player.pieceId() == 0) return;
+        request();
+    }
+
+    /** One gravity tick's worth of inputs. */
+    void step() {
+        if (player.isDead() || player.isClearing() || player.pieceId() == 0) return;
+        long seq = player.seqIdx();
+        if (seq == noPlanSeq) return;
+        if (plan == null || plan.seq() != seq) {
+            if (pendingSeq != seq) request();
+            if (pending.isDone() && !pending.isCompletedExceptionally()) {
+                plan = pending.join();
+                plansApplied++;
+            } else if (!pending.isDone() && System.nanoTime() - pendingGiveUp < 0) {
+                return; // still thinking; gravity keeps the game moving
+            } else {
+                pending.cancel(false);
+                plan = fallbackPlan();
+            }
+            pending = null;
+            pendingSeq = -1;
+            if (plan == null) {
+                noPlanSeq = seq; // no legal placement; asking again won't find one
+                return;
+            }
+        }
+        for (int k = 0; k < INPUTS_PER_TICK; k++) {
+            if (moves.generate(player) == 0) {
+                player.softDrop();
+                return;
+            }
+            int target = plan == null ? -1 : moves.find(plan.rot(), plan.row(), plan.col());
+            if (target < 0) {
+                // gravity carried the piece past the path to its target
+                plan = fallbackPlan();
+                target = plan == null ? -1 : moves.find(plan.rot(), plan.row(), plan.col());
+                if (target < 0) {
+                    noPlanSeq = seq;
+                    return;
+                }
+            }
+            Action a = moves.firstMove(target);
+            // paths end in a hard drop; falling the rest of the way one row at a time
+            // keeps the AI's old pace
+            apply(a == Action.DROP ? Action.DOWN : a);
+        }
+    }
+
+    /** Drops any plan in flight, e.g. when the game ends or restarts. */
+    void cancel() {
+        if (pending != null) pending.cancel(false);
+        pending = null;
+        pendingSeq = -1;
+        noPlanSeq = -1;
+        plan = null;
+    }
+
+    long fallbacks() { return fallbacks; }
+    long plansApplied() { return plansApplied; }
+
+    private void request() {
+        if (pending != null) pending.cancel(false);
+        SimpleAI.Snapshot snap = SimpleAI.snapshot(player, planner.lookahead());
+        long deadline = System.nanoTime() + budgetNanos;
+        pendingSeq = snap.seq();
+        pendingGiveUp = deadline + GRACE_MS * 1_000_000L;
+        CompletableFuture<SimpleAI.Plan> result = new CompletableFuture<>();
+        idle = idle.thenRunAsync(() -> {
+            if (result.isDone()) return; // cancelled before it started
+            try {
+                result.complete(planner.plan(snap, deadline));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }, executor);
+        pending = result;
+    }
+
+    private SimpleAI.Plan fallbackPlan() {
+        fallbacks++;
+        return fallback.plan(SimpleAI.snapshot(player, fallback.lookahead()), System.nanoTime() + budgetNanos);
+    }
+
+    private void apply(Action a) {
+        switch (a) {
+            case LEFT -> player.moveLeft();
+            case RIGHT -> player.moveRight();
+            case DOWN -> player.softDrop();
+            case ROTATE -> player.rotate();
+            case DROP -> player.hardDrop();
+        }
+    }
+}
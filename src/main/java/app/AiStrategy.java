@@ -0,0 +1,22 @@
+package app;
+
+/**
+ * Something that picks a lock position for the falling piece within a time budget.
+ * Implementations are called off the game thread, one request at a time per instance.
+ */
+interface AiStrategy {
+    /** Preview pieces the strategy wants copied into each snapshot. */
+    int lookahead();
+
+    /**
+     * Best plan found before {@code deadline} (a System.nanoTime() value); an anytime
+     * strategy returns its best so far once the deadline passes. Null if the piece
+     * can't be placed at all.
+     */
+    SimpleAI.Plan plan(SimpleAI.Snapshot snap, long deadline);
+
+    /** Plans without a time limit. */
+    default SimpleAI.Plan plan(SimpleAI.Snapshot snap) {
+        return plan(snap, System.nanoTime() + Long.MAX_VALUE / 2);
+    }
+}
@@ -0,0 +1,227 @@
+package app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the AI's heuristic weights by self-play with the noisy cross-entropy method:
+ * each generation samples weight vectors from a Gaussian, scores every sample by the
+ * mean of pieces placed plus lines cleared over the same seeded greedy games, and
+ * refits the Gaussian to the best fraction. Lines alone can't rank samples that all
+ * survive to the piece cap, since they clear about the same number; counting pieces
+ * ranks the ones that top out by how long they last. Samples are drawn as magnitudes,
+ * so every weight keeps the sign {@link Weights#score} gives it: lines rewarded,
+ * the rest penalised. Games run headless through {@link SelfPlay} on all cores. The state
+ * is checkpointed after every generation, so an interrupted run picks up where it
+ * stopped, and the current mean is exported to {@link Weights#FILE} for the game.
+ *
+ * <pre>java -cp target/classes app.AiTuner [--generations 30] [--population 48] [--elite 0.2]
+ *     [--games 12] [--pieces 2000] [--threads N] [--seed 1] [--checkpoint file] [--out file] [--fresh]</pre>
+ * Board size and start level come from the saved configuration.
+ */
+public final class AiTuner {
+    private static final Path CHECKPOINT = Paths.get("ai-tuner.json");
+    // spread of the first generation, on the unit sphere the samples are projected onto
+    private static final double INITIAL_STD = 0.5;
+    // extra spread added back each generation so the search doesn't collapse early
+    private static final double NOISE = 0.1;
+
+    private final int cols, rows, startLevel;
+    private final int population, games, pieces;
+    private final double eliteFraction;
+    private final long seed;
+    private final ExecutorService pool;
+    private final ThreadLocal<SelfPlay> players;
+
+    private int generation = 0;
+    private double[] mean = Weights.DEFAULT.normalized().toArray();
+    private double[] std = filled(INITIAL_STD);
+    private Weights best = Weights.DEFAULT.normalized();
+    private double bestFitness = Double.NEGATIVE_INFINITY;
+
+    AiTuner(int cols, int rows, int startLevel, int population, double eliteFraction,
+            int games, int pieces, int threads, long seed) {
+        this.cols = cols;
+        this.rows = rows;
+        this.startLevel = startLevel;
+        this.population = population;
+        this.eliteFraction = eliteFraction;
+        this.games = games;
+        this.pieces = pieces;
+        this.seed = seed;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ai-tuner");
+            t.setDaemon(true);
+            return t;
+        });
+        this.players = ThreadLocal.withInitial(() -> new SelfPlay(cols, rows, startLevel, pieces));
+    }
+
+    /** Runs one generation and refits the sampling distribution. */
+    void step(int generations) throws InterruptedException {
+        long t0 = System.nanoTime();
+        Random rng = new Random(seed * 31 + generation);
+        Weights[] samples = new Weights[population];
+        for (int i = 0; i < population; i++) {
+            double[] v = new double[Weights.SIZE];
+            for (int k = 0; k < v.length; k++) v[k] = Math.abs(mean[k] + std[k] * rng.nextGaussian());
+            samples[i] = Weights.of(v).normalized();
+        }
+        double[] fitness = evaluate(samples);
+
+        Integer[] order = new Integer[population];
+        for (int i = 0; i < population; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(fitness[b], fitness[a]));
+        int elites = Math.max(2, (int) Math.round(population * eliteFraction));
+        double[] m = new double[Weights.SIZE], s = new double[Weights.SIZE];
+        for (int e = 0; e < elites; e++) {
+            double[] v = samples[order[e]].toArray();
+            for (int k = 0; k < v.length; k++) m[k] += v[k] / elites;
+        }
+        for (int e = 0; e < elites; e++) {
+            double[] v = samples[order[e]].toArray();
+            for (int k = 0; k < v.length; k++) s[k] += (v[k] - m[k]) * (v[k] - m[k]) / elites;
+        }
+        double noise = NOISE * Math.max(0, 1 - (double) generation / generations);
+        for (int k = 0; k < s.length; k++) s[k] = Math.sqrt(s[k] + noise * noise);
+        mean = Weights.of(m).normalized().toArray();
+        std = s;
+        if (fitness[order[0]] > bestFitness) {
+            bestFitness = fitness[order[0]];
+            best = samples[order[0]];
+        }
+
+        double secs = (System.nanoTime() - t0) / 1e9;
+        double eliteMean = 0;
+        for (int e = 0; e < elites; e++) eliteMean += fitness[order[e]] / elites;
+        System.out.printf("gen %3d  best %.1f  elite %.1f  mean %s  %.1f games/s%n",
+                generation, fitness[order[0]], eliteMean, Weights.of(mean), population * games / secs);
+        generation++;
+    }
+
+    // mean pieces + lines per sample; every sample plays the same seeds
+    private double[] evaluate(Weights[] samples) throws InterruptedException {
+        long base = seed * 1_000_003L + (long) generation * games;
+        List<Callable<Integer>> tasks = new ArrayList<>(samples.length * games);
+        for (Weights w : samples) {
+            for (int g = 0; g < games; g++) {
+                long s = base + g;
+                tasks.add(() -> {
+                    SelfPlay.Result r = players.get().play(new SimpleAI(null, w, new Random(s)), s);
+                    return r.pieces() + r.lines();
+                });
+            }
+        }
+        List<Future<Integer>> results = pool.invokeAll(tasks);
+        double[] fitness = new double[samples.length];
+        try {
+            for (int i = 0; i < results.size(); i++) fitness[i / games] += results.get(i).get() / (double) games;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("self-play game failed", e.getCause());
+        }
+        return fitness;
+    }
+
+    void save(Path file) throws IOException {
+        String json = "{\n" +
+                " \"generation\": " + generation + ",\n" +
+                " \"seed\": " + seed + ",\n" +
+                " \"cols\": " + cols + ",\n" +
+                " \"rows\": " + rows + ",\n" +
+                " \"startLevel\": " + startLevel + ",\n" +
+                " \"bestFitness\": " + bestFitness + ",\n" +
+                Weights.of(mean).json("mean.") + ",\n" +
+                Weights.of(std).json("std.") + ",\n" +
+                best.json("best.") + "\n" +
+                "}\n";
+        // write aside first so a crash mid-write leaves the previous checkpoint intact
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, json, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Restores a checkpoint written by {@link #save}; false if it was for another setup. */
+    boolean load(Path file) throws IOException {
+        Map<String, String> m = JsonConfigRepository.flat(Files.readString(file, StandardCharsets.UTF_8));
+        if (!String.valueOf(seed).equals(m.get("seed")) || !String.valueOf(cols).equals(m.get("cols"))
+                || !String.valueOf(rows).equals(m.get("rows"))
+                || !String.valueOf(startLevel).equals(m.get("startLevel"))) return false;
+        generation = Integer.parseInt(m.get("generation"));
+        bestFitness = Double.parseDouble(m.get("bestFitness"));
+        mean = Weights.read(m, "mean.", Weights.of(mean)).toArray();
+        std = Weights.read(m, "std.", Weights.of(std)).toArray();
+        best = Weights.read(m, "best.", best);
+        return true;
+    }
+
+    int generation() { return generation; }
+    Weights mean() { return Weights.of(mean); }
+    Weights best() { return best; }
+    double bestFitness() { return bestFitness; }
+
+    void shutdown() { pool.shutdownNow(); }
+
+    public static void main(String[] args) throws Exception {
+        var cfg = ConfigService.getInstance();
+        JsonConfigRepository.loadInto(cfg);
+        int generations = 30, population = 48, games = 12, pieces = 2000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double elite = 0.2;
+        long seed = 1;
+        Path checkpoint = CHECKPOINT, out = Weights.FILE;
+        boolean fresh = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--generations" -> generations = Integer.parseInt(args[++i]);
+                case "--population" -> population = Integer.parseInt(args[++i]);
+                case "--elite" -> elite = Double.parseDouble(args[++i]);
+                case "--games" -> games = Integer.parseInt(args[++i]);
+                case "--pieces" -> pieces = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--checkpoint" -> checkpoint = Paths.get(args[++i]);
+                case "--out" -> out = Paths.get(args[++i]);
+                case "--fresh" -> fresh = true;
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        AiTuner tuner = new AiTuner(cfg.getFieldWidth(), cfg.getFieldHeight(), cfg.getStartLevel(),
+                population, elite, games, pieces, Math.max(1, threads), seed);
+        if (!fresh && Files.exists(checkpoint)) {
+            if (tuner.load(checkpoint)) System.out.println("resuming at generation " + tuner.generation());
+            else System.out.println("checkpoint is for another seed or board; starting over");
+        }
+        try {
+            while (tuner.generation() < generations) {
+                tuner.step(generations);
+                tuner.save(checkpoint);
+                tuner.mean().save(out);
+            }
+        } finally {
+            tuner.shutdown();
+        }
+        System.out.println("best sample " + tuner.best() + " at " + String.format("%.1f", tuner.bestFitness()) + " pieces + lines");
+        System.out.println("exported " + tuner.mean() + " to " + out);
+    }
+
+    private static double[] filled(double v) {
+        double[] a = new double[Weights.SIZE];
+        Arrays.fill(a, v);
+        return a;
+    }
+}
@@ -0,0 +1,187 @@
+package app;
+
+import app.engine.MoveGenerator;
+import app.engine.PieceGeometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Beam search over the current piece followed by the preview pieces. Each ply expands
+// every board in the beam with every placement of the next piece and keeps the best
+// {@code width} results; the move returned is the first placement on the path to the
+// best board after the last ply. Expanding the beam is split across a ForkJoinPool,
+// one subtree per task, with a BoardEvaluator per worker thread. Sibling branches and
+// successive replans often reach the same board, so evaluations go through a shared
+// TranspositionTable.
+final class BeamSearch {
+    /** First placement of the best line found. */
+    record Move(int rot, int row, int col) {}
+
+    private static final class Node {
+        final int[] masks;
+        final int rot, row, col, lines;
+
+        Node(int[] masks, int rot, int row, int col, int lines) {
+            this.masks = masks;
+            this.rot = rot;
+            this.row = row;
+            this.col = col;
+            this.lines = lines;
+        }
+    }
+
+    // a placement that has been scored but not yet built into a board
+    private record Child(Node parent, int rot, int row, int col, int lines, double score) {}
+
+    private final ForkJoinPool pool;
+    private final int width;
+    private final TranspositionTable cache;
+    private final Weights weights;
+    private final ThreadLocal<BoardEvaluator> evals = ThreadLocal.withInitial(BoardEvaluator::new);
+
+    /** @param cache shared evaluation cache, or null to evaluate every placement */
+    BeamSearch(ForkJoinPool pool, int width, TranspositionTable cache, Weights weights) {
+        if (width < 1) throw new IllegalArgumentException("beam width " + width);
+        this.pool = pool;
+        this.width = width;
+        this.cache = cache;
+        this.weights = weights;
+    }
+
+    /**
+     * Searches {@code depth} pieces deep, {@code plies[d][rot]} being the geometry of the
+     * d-th piece (0 = the falling one). The falling piece tries every lock position in
+     * {@code moves}, which must have just searched it on this board, tucks included;
+     * preview pieces only try straight drops. {@code masks} is only read. Returns null
+     * if nothing can be placed, or if {@code deadline} (System.nanoTime()) passes before
+     * the last ply is done.
+     */
+    Move search(int[] masks, int cols, int rows, PieceGeometry[][] plies, int depth,
+                MoveGenerator moves, long deadline) {
+        List<Node> beam = List.of(new Node(masks, -1, 0, -1, 0));
+        Move best = null;
+        for (int d = 0; d < depth; d++) {
+            PieceGeometry[] ply = plies[d];
+            boolean[] skip = new boolean[4];
+            for (int rot = 1; rot < 4; rot++) skip[rot] = sameAsEarlier(ply, rot);
+            List<Child> kept = pool.invoke(new Expand(beam, 0, beam.size(), ply, skip, moves, rows, cols, deadline));
+            if (System.nanoTime() - deadline > 0) return null;
+            if (kept.isEmpty()) break;
+            kept.sort((a, b) -> Double.compare(b.score, a.score));
+            List<Node> next = new ArrayList<>(kept.size());
+            BoardEvaluator e = evals.get();
+            for (Child c : kept) {
+                int[] out = new int[rows];
+                e.load(c.parent.masks, rows, cols);
+                e.place(ply[c.rot], c.row, c.col, out);
+                Node p = c.parent;
+                next.add(p.rot < 0
+                        ? new Node(out, c.rot, c.row, c.col, c.lines)
+                        : new Node(out, p.rot, p.row, p.col, c.lines));
+            }
+            beam = next;
+            Node top = beam.get(0);
+            best = new Move(top.rot, top.row, top.col);
+        }
+        return best;
+    }
+
+    private final class Expand extends RecursiveTask<List<Child>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Node> beam;
+        private final int from, to;
+        private final PieceGeometry[] ply;
+        private final boolean[] skip;
+        private final MoveGenerator moves;
+        private final int rows, cols;
+        private final long deadline;
+
+        Expand(List<Node> beam, int from, int to, PieceGeometry[] ply, boolean[] skip,
+               MoveGenerator moves, int rows, int cols, long deadline) {
+            this.beam = beam;
+            this.from = from;
+            this.to = to;
+            this.ply = ply;
+            this.skip = skip;
+            this.moves = moves;
+            this.rows = rows;
+            this.cols = cols;
+            this.deadline = deadline;
+        }
+
+        @Override protected List<Child> compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                Expand right = new Expand(beam, mid, to, ply, skip, moves, rows, cols, deadline);
+                right.fork();
+                List<Child> left = new Expand(beam, from, mid, ply, skip, moves, rows, cols, deadline).compute();
+                return merge(left, right.join());
+            }
+            if (System.nanoTime() - deadline > 0) return new ArrayList<>(); // the caller discards this ply
+            Node parent = beam.get(from);
+            BoardEvaluator e = evals.get();
+            e.load(parent.masks, rows, cols);
+            PriorityQueue<Child> top = new PriorityQueue<>(width + 1, (a, b) -> Double.compare(a.score, b.score));
+            if (parent.rot < 0 && moves != null) {
+                for (int i = 0; i < moves.count(); i++) {
+                    int rot = moves.rot(i), row = moves.row(i), col = moves.col(i);
+                    e.evaluate(ply[rot], row, col, cache);
+                    offer(top, new Child(parent, rot, row, col, e.linesCleared, score(e, e.linesCleared)));
+                }
+                return new ArrayList<>(top);
+            }
+            for (int rot = 0; rot < 4; rot++) {
+                PieceGeometry geo = ply[rot];
+                if (skip[rot] || geo.cellCount() == 0) continue;
+                int minC = -geo.minCol(), maxC = cols - 1 - geo.maxCol();
+                for (int col = minC; col <= maxC; col++) {
+                    int row = e.dropAndEvaluate(geo, col, cache);
+                    if (row == Integer.MIN_VALUE) continue;
+                    int lines = parent.lines + e.linesCleared;
+                    double score = score(e, lines);
+                    if (top.size() == width && score <= top.peek().score) continue;
+                    offer(top, new Child(parent, rot, row, col, lines, score));
+                }
+            }
+            return new ArrayList<>(top);
+        }
+
+        private void offer(PriorityQueue<Child> top, Child c) {
+            top.add(c);
+            if (top.size() > width) top.poll();
+        }
+
+        private double score(BoardEvaluator e, int lines) {
+            return weights.score(lines, e.holesAfter, e.aggHeightAfter, e.bumpinessAfter);
+        }
+
+        private List<Child> merge(List<Child> a, List<Child> b) {
+            List<Child> all = new ArrayList<>(a.size() + b.size());
+            all.addAll(a);
+            all.addAll(b);
+            if (all.size() <= width) return all;
+            all.sort((x, y) -> Double.compare(y.score, x.score));
+            return new ArrayList<>(all.subList(0, width));
+        }
+    }
+
+    // rotations whose cells are a translation of an earlier rotation reach the same boards
+    private static boolean sameAsEarlier(PieceGeometry[] ply, int rot) {
+        for (int k = 0; k < rot; k++) {
+            if (Arrays.equals(normalized(ply[k]), normalized(ply[rot]))) return true;
+        }
+        return false;
+    }
+
+    private static int[] normalized(PieceGeometry g) {
+        int[] out = new int[4];
+        int[] m = g.rowMasks();
+        for (int r = g.minRow(); r < 4; r++) out[r - g.minRow()] = m[r] >>> g.minCol();
+        return out;
+    }
+}
@@ -0,0 +1,139 @@
+package app;
+
+import app.engine.Board;
+import app.engine.PieceGeometry;
+import app.engine.PlayerState;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Optional binary framing for the external-controller link, used only when both ends
+ * agree to it; otherwise the link stays newline-delimited JSON.
+ *
+ * <p>Handshake: the client sends the line {@code HELLO BIN1} on connect. A server that
+ * understands it answers with the line {@code BIN1}, and everything it sends after
+ * that is frames. The client goes on sending lines until it answers {@code BIN1} in
+ * turn, then switches to frames too. A server that ignores the hello just keeps
+ * talking JSON.
+ *
+ * <p>Frame: a 2-byte big-endian payload length, then the payload; the first payload
+ * byte is the opcode. Commands from the server are one byte each, and one frame may
+ * carry several. Boards go out one row at a time as three bit planes (bit k of every
+ * cell's colour), each plane {@code (cols + 7) / 8} bytes with column 0 in the low
+ * bit of the first byte. A piece is its id (0 = none), then row, col and rotation as
+ * signed bytes, then its cell count and each cell's row and col as signed bytes.
+ *
+ * <pre>
+ * STATE    player u8, cols u8, rows u8, rows x row       (falling piece drawn in)
+ * KEYFRAME player u8, seq u32, cols u8, rows u8, rows x row, piece
+ * DELTA    player u8, seq u32, n u8, n x (row index u8, row), piece
+ * </pre>
+ * KEYFRAME and DELTA mean what they do in {@link SnapshotEncoder}.
+ */
+final class BinaryProtocol {
+    static final String HELLO = "HELLO BIN1";
+    static final String ACK = "BIN1";
+
+    // server to client
+    static final byte LEFT = 1, RIGHT = 2, DOWN = 3, ROTATE = 4, DROP = 5, PAUSE = 6, RESYNC = 7;
+    // client to server
+    static final byte STATE = 0x40, KEYFRAME = 0x41, DELTA = 0x42;
+
+    static final int MAX_PAYLOAD = 0xFFFF;
+    private static final String[] COMMANDS = {null, "LEFT", "RIGHT", "DOWN", "ROTATE", "DROP", "PAUSE", "RESYNC"};
+
+    private BinaryProtocol() {}
+
+    /** Command name for an opcode from the server, or null if unknown. */
+    static String command(int op) {
+        return op > 0 && op < COMMANDS.length ? COMMANDS[op] : null;
+    }
+
+    static int planeBytes(int cols) { return (cols + 7) >>> 3; }
+
+    /** Worst-case size of a STATE or KEYFRAME frame for a board this size. */
+    static int maxFrame(int cols, int rows) {
+        return 2 + 16 + rows * (1 + 3 * planeBytes(cols)) + 4 + 1 + 2 * 16;
+    }
+
+    /** Reserves the length prefix; returns where it is for {@link #endFrame}. */
+    static int beginFrame(ByteBuffer out, byte opcode) {
+        int start = out.position();
+        out.putShort((short) 0);
+        out.put(opcode);
+        return start;
+    }
+
+    static void endFrame(ByteBuffer out, int start) {
+        int len = out.position() - start - 2;
+        if (len > MAX_PAYLOAD) throw new IllegalStateException("frame too large: " + len);
+        out.putShort(start, (short) len);
+    }
+
+    /** Row of {@code cols} colours starting at {@code colors[off]}, as three bit planes. */
+    static void putRow(ByteBuffer out, int[] colors, int off, int cols) {
+        for (int k = 0; k < 3; k++) {
+            int plane = 0;
+            for (int c = 0; c < cols; c++) plane |= (colors[off + c] >>> k & 1) << c;
+            putPlane(out, plane, cols);
+        }
+    }
+
+    static void getRow(ByteBuffer in, int[] colors, int off, int cols) {
+        for (int c = 0; c < cols; c++) colors[off + c] = 0;
+        for (int k = 0; k < 3; k++) {
+            int plane = getPlane(in, cols);
+            for (int c = 0; c < cols; c++) colors[off + c] |= (plane >>> c & 1) << k;
+        }
+    }
+
+    private static void putPlane(ByteBuffer out, int plane, int cols) {
+        for (int i = 0, n = planeBytes(cols); i < n; i++) out.put((byte) (plane >>> 8 * i));
+    }
+
+    private static int getPlane(ByteBuffer in, int cols) {
+        int plane = 0;
+        for (int i = 0, n = planeBytes(cols); i < n; i++) plane |= (in.get() & 0xFF) << 8 * i;
+        return plane;
+    }
+
+    /** The piece part of KEYFRAME and DELTA; id 0 writes just the id. */
+    static void putPiece(ByteBuffer out, int id, int row, int col, int rot, PieceGeometry geo) {
+        out.put((byte) id);
+        if (id == 0) return;
+        out.put((byte) row).put((byte) col).put((byte) rot);
+        int[] cr = geo.cellRows(), cc = geo.cellCols();
+        out.put((byte) cr.length);
+        for (int i = 0; i < cr.length; i++) out.put((byte) (row + cr[i])).put((byte) (col + cc[i]));
+    }
+
+    /** Binary form of {@link GameView#snapshotJson(int, PlayerState)}, as one frame. */
+    static void writeState(ByteBuffer out, int player, PlayerState p) {
+        Board board = p.board();
+        int rows = p.rows(), cols = p.cols();
+        // the falling piece is drawn in from its geometry's row masks, no scratch grid
+        int[] pieceRows = null;
+        int pieceTop = 0, pieceCol = 0, pid = 0;
+        if (!p.isClearing() && !p.isDead() && p.piece() != null) {
+            pieceRows = p.pieceGeometry(p.pieceRot()).rowMasks();
+            pieceTop = p.pieceRow();
+            pieceCol = p.pieceCol();
+            pid = p.pieceId();
+        }
+        int start = beginFrame(out, STATE);
+        out.put((byte) player).put((byte) cols).put((byte) rows);
+        for (int r = 0; r < rows; r++) {
+            int d = r - pieceTop, mask = 0;
+            if (pieceRows != null && d >= 0 && d < 4) mask = Math.max(0, Board.shift(pieceRows[d], pieceCol, board.fullMask()));
+            for (int k = 0; k < 3; k++) {
+                int plane = 0;
+                for (int c = 0; c < cols; c++) {
+                    int v = (mask >>> c & 1) != 0 ? pid : board.color(r, c);
+                    plane |= (v >>> k & 1) << c;
+                }
+                putPlane(out, plane, cols);
+            }
+        }
+        endFrame(out, start);
+    }
+}
@@ -0,0 +1,65 @@
+package app;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// One pre-rasterised cell per palette colour (index 0 = empty cell) plus a white flash
+// cell, built once per cell size. Each sprite is kept both as ARGB ints for the
+// renderer's pixel buffer and as an image for drawImage.
+final class BlockSprites {
+    private record Key(int cell, List<Color> palette) {}
+    private static final Map<Key, BlockSprites> CACHE = new HashMap<>();
+
+    static final Color BG = Color.web("#111418");
+    static final Color GRID = Color.web("#2a2f3a");
+
+    static BlockSprites forSize(Color[] palette, int cell) {
+        return CACHE.computeIfAbsent(new Key(cell, List.of(palette)), k -> new BlockSprites(palette, cell));
+    }
+
+    final int cell;
+    final int flash;
+    private final int[][] pixels;
+    private final WritableImage[] images;
+
+    private BlockSprites(Color[] palette, int cell) {
+        this.cell = cell;
+        this.flash = palette.length;
+        this.pixels = new int[palette.length + 1][];
+        this.images = new WritableImage[palette.length + 1];
+        for (int i = 0; i <= palette.length; i++) {
+            Color fill = i == flash ? Color.WHITE : palette[i];
+            int[] px = raster(fill.getOpacity() == 0 ? BG : fill);
+            WritableImage img = new WritableImage(cell, cell);
+            img.getPixelWriter().setPixels(0, 0, cell, cell, PixelFormat.getIntArgbInstance(), px, 0, cell);
+            pixels[i] = px;
+            images[i] = img;
+        }
+    }
+
+    int[] pixels(int idx) { return pixels[idx]; }
+    WritableImage image(int idx) { return images[idx]; }
+
+    // 1px grid border around the fill, matching the old strokeRect/fillRect pair
+    private int[] raster(Color fill) {
+        int grid = argb(GRID), inner = argb(fill);
+        int[] px = new int[cell * cell];
+        for (int y = 0; y < cell; y++) for (int x = 0; x < cell; x++) {
+            boolean edge = x == 0 || y == 0 || x == cell - 1 || y == cell - 1;
+            px[y * cell + x] = edge ? grid : inner;
+        }
+        return px;
+    }
+
+    static int argb(Color c) {
+        return (int) Math.round(c.getOpacity() * 255) << 24
+                | (int) Math.round(c.getRed() * 255) << 16
+                | (int) Math.round(c.getGreen() * 255) << 8
+                | (int) Math.round(c.getBlue() * 255);
+    }
+}
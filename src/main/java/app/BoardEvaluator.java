@@ -0,0 +1,251 @@
+package app;
+
+import app.engine.Board;
+import app.engine.PieceGeometry;
+
+import java.util.Arrays;
+
+// Heuristic features of "base board + one placed piece", computed as a delta over the
+// columns the piece touches. Column heights, per-column holes and row fill counts are
+// built once per base board in load(); evaluate() then costs O(piece width) and never
+// allocates. Only placements that complete a row fall back to a full sweep over
+// preallocated scratch rows.
+final class BoardEvaluator {
+    private static final long NO_FIT = -1L;
+
+    private int rows, cols, full;
+    private int[] masks = new int[0], rowFill = new int[0];
+    private int[] heights = new int[0], holes = new int[0];
+    private int aggHeight, bumpiness, totalHoles;
+    private long hash;
+    private int[] scratch = new int[0], scratchHeights = new int[0];
+
+    // features of the last evaluate() call
+    int linesCleared, holesAfter, aggHeightAfter, bumpinessAfter;
+
+    void load(Board b) {
+        resize(b.rows(), b.cols());
+        for (int r = 0; r < rows; r++) masks[r] = b.row(r);
+        hash = b.hash();
+        rebuild();
+    }
+
+    void load(int[] src, int rows, int cols) {
+        resize(rows, cols);
+        System.arraycopy(src, 0, masks, 0, rows);
+        hash = Board.hash(masks, rows);
+        rebuild();
+    }
+
+    int rows() { return rows; }
+    int cols() { return cols; }
+    int height(int c) { return heights[c]; }
+    int holes() { return totalHoles; }
+    int aggHeight() { return aggHeight; }
+    int bumpiness() { return bumpiness; }
+    long hash() { return hash; }
+
+    /**
+     * Row where the piece comes to rest when dropped straight down at {@code col},
+     * read off the column heights; Integer.MIN_VALUE if it doesn't fit from the top.
+     * Cells above row 0 never collide, so a piece sticking out of the top can still sit
+     * below a filled top row; that case is resolved with plain collision checks.
+     */
+    int dropRow(PieceGeometry g, int col) {
+        int[] bottom = g.bottom();
+        int land = Integer.MAX_VALUE;
+        for (int j = g.minCol(); j <= g.maxCol(); j++) {
+            if (bottom[j] < 0) continue;
+            int c = col + j;
+            if (c < 0 || c >= cols) return Integer.MIN_VALUE;
+            land = Math.min(land, rows - heights[c] - bottom[j] - 1);
+        }
+        if (land >= -3) return land;
+        int[] pm = g.rowMasks();
+        int r = -3;
+        while (r <= rows && Board.fits(masks, rows, full, pm, r + 1, col)) r++;
+        if (r > rows) return Integer.MIN_VALUE;
+        return Board.fits(masks, rows, full, pm, r, col) ? r : Integer.MIN_VALUE;
+    }
+
+    /**
+     * dropRow() followed by evaluate(), answered from {@code cache} when the same board,
+     * piece, rotation and column were seen before. Returns the landing row, or
+     * Integer.MIN_VALUE when the piece doesn't fit; the result fields are set otherwise.
+     */
+    int dropAndEvaluate(PieceGeometry g, int col, TranspositionTable cache) {
+        long key = 0;
+        if (cache != null) {
+            key = TranspositionTable.key(hash, cols, rows, g, TranspositionTable.DROPPED, col);
+            long v = cache.get(key);
+            if (v == NO_FIT) return Integer.MIN_VALUE;
+            if (v != TranspositionTable.MISS) return unpack(v);
+        }
+        int row = dropRow(g, col);
+        if (row != Integer.MIN_VALUE) evaluate(g, row, col);
+        if (cache != null) cache.put(key, row == Integer.MIN_VALUE ? NO_FIT : pack(row));
+        return row;
+    }
+
+    /** evaluate() for a placement anywhere on the board, e.g. a tuck, through {@code cache}. */
+    void evaluate(PieceGeometry g, int row, int col, TranspositionTable cache) {
+        if (cache == null) {
+            evaluate(g, row, col);
+            return;
+        }
+        long key = TranspositionTable.key(hash, cols, rows, g, row, col);
+        long v = cache.get(key);
+        if (v != TranspositionTable.MISS && v != NO_FIT) {
+            unpack(v);
+            return;
+        }
+        evaluate(g, row, col);
+        cache.put(key, pack(row));
+    }
+
+    /** The last evaluate() result and its landing row in one long, for caching. */
+    private long pack(int row) {
+        return (long) (row + 128) << 40 | (long) linesCleared << 36
+                | (long) holesAfter << 24 | (long) aggHeightAfter << 12 | bumpinessAfter;
+    }
+
+    /** Restores the result fields from {@link #pack(int)} and returns the landing row. */
+    private int unpack(long v) {
+        linesCleared = (int) (v >>> 36 & 0xF);
+        holesAfter = (int) (v >>> 24 & 0xFFF);
+        aggHeightAfter = (int) (v >>> 12 & 0xFFF);
+        bumpinessAfter = (int) (v & 0xFFF);
+        return (int) (v >>> 40 & 0xFF) - 128;
+    }
+
+    void evaluate(PieceGeometry g, int row, int col) {
+        int[] pm = g.rowMasks();
+        for (int r = 0; r < 4; r++) {
+            int rr = row + r;
+            if (pm[r] == 0 || rr < 0 || rr >= rows) continue;
+            if (rowFill[rr] + Integer.bitCount(pm[r]) == cols) {
+                sweep(pm, row, col);
+                return;
+            }
+        }
+
+        int[] top = g.top(), bottom = g.bottom();
+        int dHoles = 0, dAgg = 0;
+        int c0 = col + g.minCol(), c1 = col + g.maxCol();
+        for (int j = g.minCol(); j <= g.maxCol(); j++) {
+            if (top[j] < 0) continue;
+            int c = col + j;
+            int surface = rows - heights[c];
+            int rt = Math.max(0, row + top[j]), rb = row + bottom[j];
+            if (rb < 0) continue;
+            if (rb < surface) {
+                dHoles += surface - rb - 1;
+                dAgg += (rows - rt) - heights[c];
+            } else {
+                dHoles -= rb - rt + 1;
+            }
+        }
+        // bumpiness only changes on the pairs that touch a piece column
+        int dBump = 0;
+        for (int c = Math.max(0, c0 - 1); c <= Math.min(cols - 2, c1); c++) {
+            dBump += Math.abs(newHeight(g, row, col, c) - newHeight(g, row, col, c + 1))
+                    - Math.abs(heights[c] - heights[c + 1]);
+        }
+        linesCleared = 0;
+        holesAfter = totalHoles + dHoles;
+        aggHeightAfter = aggHeight + dAgg;
+        bumpinessAfter = bumpiness + dBump;
+    }
+
+    private int newHeight(PieceGeometry g, int row, int col, int c) {
+        int j = c - col;
+        if (j < 0 || j > 3 || g.top()[j] < 0 || row + g.bottom()[j] < 0) return heights[c];
+        return Math.max(heights[c], rows - Math.max(0, row + g.top()[j]));
+    }
+
+    private void resize(int rows, int cols) {
+        if (rows == this.rows && cols == this.cols) return;
+        this.rows = rows;
+        this.cols = cols;
+        this.full = (1 << cols) - 1;
+        masks = new int[rows];
+        rowFill = new int[rows];
+        scratch = new int[rows];
+        heights = new int[cols];
+        holes = new int[cols];
+        scratchHeights = new int[cols];
+    }
+
+    private void rebuild() {
+        Arrays.fill(heights, 0);
+        Arrays.fill(holes, 0);
+        int seen = 0;
+        for (int r = 0; r < rows; r++) {
+            int m = masks[r];
+            rowFill[r] = Integer.bitCount(m);
+            for (int fresh = m & ~seen; fresh != 0; fresh &= fresh - 1) {
+                heights[Integer.numberOfTrailingZeros(fresh)] = rows - r;
+            }
+            for (int h = seen & ~m; h != 0; h &= h - 1) holes[Integer.numberOfTrailingZeros(h)]++;
+            seen |= m;
+        }
+        aggHeight = 0;
+        totalHoles = 0;
+        for (int c = 0; c < cols; c++) {
+            aggHeight += heights[c];
+            totalHoles += holes[c];
+        }
+        bumpiness = 0;
+        for (int c = 0; c + 1 < cols; c++) bumpiness += Math.abs(heights[c] - heights[c + 1]);
+    }
+
+    /**
+     * Writes the board after placing the piece and clearing full rows into {@code out}
+     * (at least rows() long) and returns the number of rows cleared.
+     */
+    int place(PieceGeometry g, int row, int col, int[] out) {
+        return place(g.rowMasks(), row, col, out);
+    }
+
+    private int place(int[] pm, int row, int col, int[] b) {
+        System.arraycopy(masks, 0, b, 0, rows);
+        for (int r = 0; r < 4; r++) {
+            int rr = row + r;
+            if (pm[r] == 0 || rr < 0 || rr >= rows) continue;
+            int s = Board.shift(pm[r], col, full);
+            if (s > 0) b[rr] |= s;
+        }
+        int cleared = 0, write = rows - 1;
+        for (int r = rows - 1; r >= 0; r--) {
+            if (b[r] == full) { cleared++; continue; }
+            b[write--] = b[r];
+        }
+        for (; write >= 0; write--) b[write] = 0;
+        return cleared;
+    }
+
+    // full recount for placements that clear rows
+    private void sweep(int[] pm, int row, int col) {
+        int[] b = scratch;
+        int cleared = place(pm, row, col, b);
+
+        int[] h = scratchHeights;
+        Arrays.fill(h, 0);
+        int seen = 0, holeCount = 0;
+        for (int r = 0; r < rows; r++) {
+            int m = b[r];
+            for (int fresh = m & ~seen; fresh != 0; fresh &= fresh - 1) {
+                h[Integer.numberOfTrailingZeros(fresh)] = rows - r;
+            }
+            holeCount += Integer.bitCount(seen & ~m);
+            seen |= m;
+        }
+        int agg = 0, bump = 0;
+        for (int c = 0; c < cols; c++) agg += h[c];
+        for (int c = 0; c + 1 < cols; c++) bump += Math.abs(h[c] - h[c + 1]);
+        linesCleared = cleared;
+        holesAfter = holeCount;
+        aggHeightAfter = agg;
+        bumpinessAfter = bump;
+    }
+}
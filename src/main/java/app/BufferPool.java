@@ -0,0 +1,41 @@
+package app;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Direct buffers for outgoing messages, shared by every thread that sends. A message
+// is encoded into an acquired buffer and the transport releases it once written, so
+// steady-state sending allocates nothing. Messages too big for a pooled buffer get a
+// one-off heap buffer, which release() simply drops.
+final class BufferPool {
+    static final int SIZE = 4096;
+    private static final int MAX_FREE = 256;
+
+    private static final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger freeCount = new AtomicInteger();
+
+    private BufferPool() {}
+
+    /** A cleared buffer with at least {@code min} bytes of room. */
+    static ByteBuffer acquire(int min) {
+        if (min > SIZE) return ByteBuffer.allocate(min);
+        ByteBuffer b = free.poll();
+        if (b == null) return ByteBuffer.allocateDirect(SIZE);
+        freeCount.decrementAndGet();
+        return b.clear();
+    }
+
+    static ByteBuffer acquire() { return acquire(SIZE); }
+
+    /** Hands a buffer back; the caller must not touch it afterwards. */
+    static void release(ByteBuffer b) {
+        if (b == null || !b.isDirect() || b.capacity() != SIZE) return;
+        if (freeCount.incrementAndGet() > MAX_FREE) {
+            freeCount.decrementAndGet();
+            return;
+        }
+        free.add(b);
+    }
+}
@@ -9,14 +9,30 @@ public final class ConfigService {
     private ConfigService() { applyDefaults(); }
 
     public enum PlayerType { HUMAN, AI, EXTERNAL }
+    /** Thinking time an AI player gets per piece. */
+    public enum AiTier {
+        FAST(1), NORMAL(10), STRONG(100);
+        private final int budgetMs;
+        AiTier(int budgetMs) { this.budgetMs = budgetMs; }
+        public int budgetMs() { return budgetMs; }
+        @Override public String toString() { return name().charAt(0) + name().substring(1).toLowerCase() + " (" + budgetMs + " ms)"; }
+    }
     public enum Mode { ONE_PLAYER, TWO_PLAYER }
+    /** What external players receive: the whole board every time, or a keyframe then deltas. */
+    public enum SnapshotMode { FULL, DELTA }
 
     private int fieldWidth, fieldHeight, blockSize, startLevel;
+    private int aiLookahead, aiBeamWidth;
+    private int replayCheckpointSecs;
     private boolean musicEnabled, sfxEnabled, aiPlay, extendedMode;
     private String serverHost = "localhost";
     private int serverPort = 3000;
+    private SnapshotMode snapshotMode = SnapshotMode.FULL;
+    private boolean binaryProtocol;
+    private int externalCommandsPerFrame;
     private Mode mode = Mode.ONE_PLAYER;
     private PlayerType player1Type = PlayerType.HUMAN, player2Type = PlayerType.AI;
+    private AiTier player1AiTier = AiTier.NORMAL, player2AiTier = AiTier.NORMAL;
 
     private final List<Consumer<ConfigService>> listeners = new ArrayList<>();
     public void addListener(Consumer<ConfigService> l){ if(l!=null) listeners.add(l); }
@@ -31,33 +47,54 @@ public final class ConfigService {
         aiPlay       = false;
         extendedMode = false;
         blockSize    = 24;
+        aiLookahead  = 3;   // deepest search; the tier's time budget decides how far it gets
+        aiBeamWidth  = 8;
+        replayCheckpointSecs = 30; // seek cost vs replay file size
         serverHost   = "localhost";
         serverPort   = 3000;
+        snapshotMode = SnapshotMode.FULL; // the stock server only understands full states
+        binaryProtocol = false; // offer BinaryProtocol; JSON if the server doesn't take it
+        externalCommandsPerFrame = 32; // a burst beyond this spills into later frames
         player1Type  = PlayerType.HUMAN;
         player2Type  = PlayerType.AI;
+        player1AiTier = AiTier.NORMAL;
+        player2AiTier = AiTier.NORMAL;
         fire();
     }
 
     // getters
     public int getFieldWidth(){return fieldWidth;}  public int getFieldHeight(){return fieldHeight;}
     public int getBlockSize(){return blockSize;}    public int getStartLevel(){return startLevel;}
+    public int getAiLookahead(){return aiLookahead;} public int getAiBeamWidth(){return aiBeamWidth;}
+    public int getReplayCheckpointSecs(){return replayCheckpointSecs;}
     public boolean isMusicEnabled(){return musicEnabled;} public boolean isSfxEnabled(){return sfxEnabled;}
     public boolean isAiPlay(){return aiPlay;}       public boolean isExtendedMode(){return extendedMode;}
     public String getServerHost(){return serverHost;} public int getServerPort(){return serverPort;}
+    public SnapshotMode getSnapshotMode(){return snapshotMode;} public boolean isBinaryProtocol(){return binaryProtocol;}
+    public int getExternalCommandsPerFrame(){return externalCommandsPerFrame;}
     public Mode getMode(){return mode;} public PlayerType getPlayer1Type(){return player1Type;} public PlayerType getPlayer2Type(){return player2Type;}
+    public AiTier getPlayer1AiTier(){return player1AiTier;} public AiTier getPlayer2AiTier(){return player2AiTier;}
 
     // setters (notify on change)
     public void setFieldWidth(int v){ if(v!=fieldWidth){ fieldWidth=v; fire(); } }
     public void setFieldHeight(int v){ if(v!=fieldHeight){ fieldHeight=v; fire(); } }
     public void setBlockSize(int v){ if(v!=blockSize){ blockSize=v; fire(); } }
     public void setStartLevel(int v){ if(v!=startLevel){ startLevel=v; fire(); } }
+    public void setAiLookahead(int v){ if(v!=aiLookahead){ aiLookahead=v; fire(); } }
+    public void setAiBeamWidth(int v){ if(v!=aiBeamWidth){ aiBeamWidth=v; fire(); } }
+    public void setReplayCheckpointSecs(int v){ if(v!=replayCheckpointSecs){ replayCheckpointSecs=v; fire(); } }
     public void setMusicEnabled(boolean v){ if(v!=musicEnabled){ musicEnabled=v; fire(); } }
     public void setSfxEnabled(boolean v){ if(v!=sfxEnabled){ sfxEnabled=v; fire(); } }
     public void setAiPlay(boolean v){ if(v!=aiPlay){ aiPlay=v; fire(); } }
     public void setExtendedMode(boolean v){ if(v!=extendedMode){ extendedMode=v; fire(); } }
     public void setServerHost(String v){ if(!Objects.equals(v,serverHost)){ serverHost=v; fire(); } }
     public void setServerPort(int v){ if(v!=serverPort){ serverPort=v; fire(); } }
+    public void setSnapshotMode(SnapshotMode v){ if(v!=snapshotMode){ snapshotMode=v; fire(); } }
+    public void setBinaryProtocol(boolean v){ if(v!=binaryProtocol){ binaryProtocol=v; fire(); } }
+    public void setExternalCommandsPerFrame(int v){ if(v!=externalCommandsPerFrame){ externalCommandsPerFrame=v; fire(); } }
     public void setMode(Mode v){ if(v!=mode){ mode=v; fire(); } }
     public void setPlayer1Type(PlayerType v){ if(v!=player1Type){ player1Type=v; fire(); } }
     public void setPlayer2Type(PlayerType v){ if(v!=player2Type){ player2Type=v; fire(); } }
+    public void setPlayer1AiTier(AiTier v){ if(v!=player1AiTier){ player1AiTier=v; fire(); } }
+    public void setPlayer2AiTier(AiTier v){ if(v!=player2AiTier){ player2AiTier=v; fire(); } }
 }
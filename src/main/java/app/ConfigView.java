@@ -32,6 +32,16 @@ public class ConfigView {
         var levelSlider = sliderWithIntRange(1, 10, cfg.getStartLevel(), levelValue);
         levelSlider.valueProperty().addListener((obs, a, b) -> { cfg.setStartLevel(b.intValue()); JsonConfigRepository.save(cfg); });
 
+        var lookLabel  = new Label("AI Lookahead");
+        var lookValue  = new Label(Integer.toString(cfg.getAiLookahead()));
+        var lookSlider = sliderWithIntRange(0, 4, cfg.getAiLookahead(), lookValue);
+        lookSlider.valueProperty().addListener((obs, a, b) -> { cfg.setAiLookahead(b.intValue()); JsonConfigRepository.save(cfg); });
+
+        var beamLabel  = new Label("AI Beam Width");
+        var beamValue  = new Label(Integer.toString(cfg.getAiBeamWidth()));
+        var beamSlider = sliderWithIntRange(4, 20, cfg.getAiBeamWidth(), beamValue);
+        beamSlider.valueProperty().addListener((obs, a, b) -> { cfg.setAiBeamWidth(b.intValue()); JsonConfigRepository.save(cfg); });
+
         var music  = new CheckBox("Music");
         music.setSelected(cfg.isMusicEnabled());
         music.selectedProperty().addListener((o, ov, nv) -> { cfg.setMusicEnabled(nv); JsonConfigRepository.save(cfg); });
@@ -53,10 +63,13 @@ public class ConfigView {
         p1Box.getItems().setAll(ConfigService.PlayerType.values());
         p1Box.getSelectionModel().select(stagedP1);
 
+        var p1Tier = tierBox(cfg.getPlayer1AiTier(), p1Box);
+
         var p2Lbl = new Label("Player 2 Type");
         var p2Box = new ComboBox<ConfigService.PlayerType>();
         p2Box.getItems().setAll(ConfigService.PlayerType.values());
         p2Box.getSelectionModel().select(stagedP2);
+        var p2Tier = tierBox(cfg.getPlayer2AiTier(), p2Box);
 
         var aiPlay = new CheckBox("AI Play");
         aiPlay.setSelected(cfg.isAiPlay());
@@ -77,6 +90,8 @@ public class ConfigView {
         var modeRow = labeledRow(modeLbl, modeBox);
         var p1Row   = labeledRow(p1Lbl, p1Box);
         var p2Row   = labeledRow(p2Lbl, p2Box);
+        p1Row.getChildren().add(p1Tier);
+        p2Row.getChildren().add(p2Tier);
 
         extend.selectedProperty().addListener((obs, ov, nv) -> {
             if (!nv && modeBox.getValue() == ConfigService.Mode.TWO_PLAYER) {
@@ -99,6 +114,8 @@ public class ConfigView {
         grid.add(row(widthLabel, widthSlider, widthValue), 0, 0);
         grid.add(row(heightLabel, heightSlider, heightValue), 0, 1);
         grid.add(row(levelLabel, levelSlider, levelValue), 0, 2);
+        grid.add(row(lookLabel, lookSlider, lookValue), 0, 3);
+        grid.add(row(beamLabel, beamSlider, beamValue), 0, 4);
 
         var checks = new VBox(10, music, sfx, aiPlay, extend);
         checks.setAlignment(Pos.CENTER);
@@ -116,6 +133,8 @@ public class ConfigView {
             cs.setMode(newMode);
             cs.setPlayer1Type(p1Box.getValue());
             cs.setPlayer2Type(p2Box.getValue());
+            cs.setPlayer1AiTier(p1Tier.getValue());
+            cs.setPlayer2AiTier(p2Tier.getValue());
             JsonConfigRepository.save(cs);
         });
 
@@ -129,6 +148,8 @@ public class ConfigView {
             cs.setMode(newMode);
             cs.setPlayer1Type(p1Box.getValue());
             cs.setPlayer2Type(p2Box.getValue());
+            cs.setPlayer1AiTier(p1Tier.getValue());
+            cs.setPlayer2AiTier(p2Tier.getValue());
             JsonConfigRepository.save(cs);
             stage.setScene(Main.buildMenuScene(stage));
         });
@@ -170,6 +191,21 @@ public class ConfigView {
         p2Row.setVisible(isTwoP);
     }
 
+    // AI strength picker that only shows while its player type is AI
+    private static ComboBox<ConfigService.AiTier> tierBox(ConfigService.AiTier init, ComboBox<ConfigService.PlayerType> type) {
+        var box = new ComboBox<ConfigService.AiTier>();
+        box.getItems().setAll(ConfigService.AiTier.values());
+        box.getSelectionModel().select(init);
+        Runnable sync = () -> {
+            boolean ai = type.getValue() == ConfigService.PlayerType.AI;
+            box.setVisible(ai);
+            box.setManaged(ai);
+        };
+        type.valueProperty().addListener((o, ov, nv) -> sync.run());
+        sync.run();
+        return box;
+    }
+
     private static Slider sliderWithIntRange(int min, int max, int init, Label out) {
         var s = new Slider(min, max, init);
         s.setMajorTickUnit((max - min) / 4.0);
@@ -2,29 +2,49 @@ package app;
 
 import javafx.application.Platform;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
-final class ExternalClient implements Runnable {
+// One external controller: a connection on the shared ExternalTransport plus the
+// command parsing for it. No thread of its own, so one process can drive as many
+// bot-controlled boards as the server accepts. Offers BinaryProtocol on connect if
+// asked to, and talks JSON unless the server takes it up.
+final class ExternalClient {
     private final String host;
     private final int port;
     private final Consumer<String> onCommand;
     private final Consumer<Boolean> onConnectionChange; // true=connected, false=disconnected
     private final Supplier<String> initialStateSupplier;
+    private final boolean offerBinary;
 
-    private volatile boolean running = true;
-    private volatile PrintWriter out;
+    private volatile ExternalTransport.Conn conn;
+    // set once the initial snapshot is queued, so nothing can overtake it
+    private volatile boolean greeted = false;
+    // set on the FX thread once we have switched to sending frames
+    private volatile boolean binary = false;
 
+    /**
+     * @param onCommand called with the normalised command, on the transport thread (or the
+     *                  FX thread for the RESYNC after switching to binary); must be thread-safe
+     * @param onConnectionChange called on the FX thread
+     * @param initialStateSupplier called on the FX thread once connected; its line is sent first
+     */
     ExternalClient(String host, int port,
                    Consumer<String> onCommand,
                    Consumer<Boolean> onConnectionChange,
                    Supplier<String> initialStateSupplier) {
+        this(host, port, onCommand, onConnectionChange, initialStateSupplier, false);
+    }
+
+    /** @param offerBinary offer {@link BinaryProtocol} to the server on every connect */
+    ExternalClient(String host, int port,
+                   Consumer<String> onCommand,
+                   Consumer<Boolean> onConnectionChange,
+                   Supplier<String> initialStateSupplier,
+                   boolean offerBinary) {
+        this.offerBinary = offerBinary;
         this.host = Objects.requireNonNull(host);
         this.port = port;
         this.onCommand = onCommand;
@@ -32,75 +52,126 @@ final class ExternalClient implements Runnable {
         this.initialStateSupplier = initialStateSupplier;
     }
 
-    public void stop() { running = false; }
-
-    public void sendJson(String jsonLine) {
-        try {
-            PrintWriter w = this.out;
-            if (w != null) {
-                synchronized (this) {
-                    w.println(jsonLine);
-                    w.flush();
-                }
-                String preview = jsonLine.substring(0, Math.min(200, jsonLine.length()));
-                System.out.println("[EXT->SRV] sent " + jsonLine.length() + " bytes: " +
-                        preview + (jsonLine.length() > 200 ? "..." : ""));
-            } else {
-                System.out.println("[EXT->SRV] sendJson skipped (socket not connected yet)");
-            }
-        } catch (Exception ex) {
-            System.out.println("[EXT->SRV] sendJson error: " + ex);
-        }
-    }
-
-
-    @Override public void run() {
-        while (running) {
-            try (Socket socket = new Socket(host, port);
-                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-                 PrintWriter outW = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
-
-                this.out = outW;
-                Platform.runLater(() -> onConnectionChange.accept(true));
-                System.out.println("[ExternalClient] Connected to " + host + ":" + port);
-
-                if (initialStateSupplier != null) {
+    void start() {
+        if (conn != null) return;
+        conn = ExternalTransport.shared().connect(host, port, new ExternalTransport.Handler() {
+            @Override public void onConnected(ExternalTransport.Conn c) {
+                if (offerBinary) c.send(BinaryProtocol.HELLO);
+                Platform.runLater(() -> {
+                    onConnectionChange.accept(true);
+                    greeted = true;
+                    if (initialStateSupplier == null) return;
                     String init = initialStateSupplier.get();
                     if (init != null && !init.isBlank()) {
-                        outW.println(init);
-                        outW.flush();
+                        c.sendSnapshot(init);
                         System.out.println("[ExternalClient] SENT(initial): " +
                                 init.substring(0, Math.min(200, init.length())) + "...");
                     } else {
                         System.out.println("[ExternalClient] WARNING: initial snapshot is null/blank (nothing sent).");
                     }
+                });
+            }
+
+            @Override public void onLine(ExternalTransport.Conn c, String line) {
+                if (offerBinary && line.trim().equals(BinaryProtocol.ACK)) {
+                    c.useFrames();
+                    System.out.println("[ExternalClient] Server accepted binary protocol.");
+                    // switch our side on the FX thread, where snapshots are sent, so no
+                    // JSON can follow the marker; then start the server off with a keyframe
+                    Platform.runLater(() -> {
+                        c.send(BinaryProtocol.ACK);
+                        binary = true;
+                        onCommand.accept("RESYNC");
+                    });
+                    return;
                 }
+                String cmd = parse(line);
+                if (cmd != null) onCommand.accept(cmd);
+            }
 
-                String line;
-                while (running && (line = in.readLine()) != null) {
-                    String cmd = line.trim().toUpperCase();
-                    switch (cmd) {
-                        case "LEFT", "RIGHT", "DOWN", "ROTATE", "DROP", "PAUSE" -> onCommand.accept(cmd);
-                        case "L" -> onCommand.accept("LEFT");
-                        case "R" -> onCommand.accept("RIGHT");
-                        case "D" -> onCommand.accept("DOWN");
-                        case "U" -> onCommand.accept("ROTATE");
-                        case "SPACE", "HARD", "HARDDROP" -> onCommand.accept("DROP");
-                        case "P" -> onCommand.accept("PAUSE");
-                        default -> {}
-                    }
+            @Override public void onFrame(ExternalTransport.Conn c, ByteBuffer payload) {
+                while (payload.hasRemaining()) {
+                    String cmd = BinaryProtocol.command(payload.get());
+                    if (cmd != null) onCommand.accept(cmd);
                 }
-                System.out.println("[ExternalClient] Disconnected (socket closed).");
-            } catch (Exception e) {
-                this.out = null;
+            }
+
+            @Override public void onDisconnected(ExternalTransport.Conn c) {
+                greeted = false;
+                binary = false;
                 Platform.runLater(() -> onConnectionChange.accept(false));
-                System.out.println("[ExternalClient] Connection error: " + e.getMessage());
-                try { Thread.sleep(1200); } catch (InterruptedException ignored) {}
-            } finally {
-                this.out = null;
             }
-        }
-        Platform.runLater(() -> onConnectionChange.accept(false));
+        });
+    }
+
+    public void stop() {
+        ExternalTransport.Conn c = conn;
+        conn = null;
+        if (c != null) c.close();
         System.out.println("[ExternalClient] Stopped.");
     }
+
+    boolean isConnected() {
+        ExternalTransport.Conn c = conn;
+        return c != null && c.isConnected();
+    }
+
+    /** True once both sides speak {@link BinaryProtocol}; send frames, not JSON, from then on. */
+    boolean isBinary() { return binary; }
+
+    /**
+     * Queues a snapshot frame built in a {@link BufferPool} buffer (flipped), which this
+     * takes over. Same rules as {@link #sendJson}.
+     */
+    boolean sendFrame(ByteBuffer frame) {
+        ExternalTransport.Conn c = conn;
+        if (c != null && greeted && binary) return c.sendSnapshot(frame);
+        BufferPool.release(frame);
+        return true;
+    }
+
+    /**
+     * Queues a snapshot line for the server; never blocks. Latest wins: a snapshot still
+     * waiting to go out is replaced, not sent. Dropped while not connected, or if null.
+     * @return false if the send queue was full and this one was dropped
+     */
+    public boolean sendJson(String jsonLine) {
+        ExternalTransport.Conn c = conn;
+        return c == null || !greeted || jsonLine == null || c.sendSnapshot(jsonLine);
+    }
+
+    /** True if a queued snapshot would be replaced by the next one. */
+    boolean snapshotPending() {
+        ExternalTransport.Conn c = conn;
+        return c != null && c.snapshotPending();
+    }
+
+    int queueDepth() {
+        ExternalTransport.Conn c = conn;
+        return c == null ? 0 : c.queueDepth();
+    }
+
+    long droppedFrames() {
+        ExternalTransport.Conn c = conn;
+        return c == null ? 0 : c.dropped();
+    }
+
+    long framesSent() {
+        ExternalTransport.Conn c = conn;
+        return c == null ? 0 : c.sent();
+    }
+
+    private static String parse(String line) {
+        String cmd = line.trim().toUpperCase();
+        return switch (cmd) {
+            case "LEFT", "RIGHT", "DOWN", "ROTATE", "DROP", "PAUSE", "RESYNC" -> cmd;
+            case "L" -> "LEFT";
+            case "R" -> "RIGHT";
+            case "D" -> "DOWN";
+            case "U" -> "ROTATE";
+            case "SPACE", "HARD", "HARDDROP" -> "DROP";
+            case "P" -> "PAUSE";
+            default -> null;
+        };
+    }
 }
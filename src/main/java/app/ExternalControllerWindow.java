@@ -18,9 +18,6 @@ import java.nio.charset.StandardCharsets;
 
 public final class ExternalControllerWindow {
 
-    private static final String HOST = "localhost";
-    private static final int PORT = 3000;
-
     private static Stage stage;           // singleton window
     private static Socket socket;
     private static PrintWriter out;
@@ -67,7 +64,8 @@ public final class ExternalControllerWindow {
 
         var root = new VBox(
                 10,
-                centered(new Label("External Controller (localhost:3000)")),
+                centered(new Label("External Controller (" + ConfigService.getInstance().getServerHost()
+                        + ":" + ConfigService.getInstance().getServerPort() + ")")),
                 centered(status),
                 centered(new HBox(8, left, right, down, rotate, drop, pause)),
                 centered(new HBox(8, connectBtn, closeBtn))
@@ -108,7 +106,8 @@ public final class ExternalControllerWindow {
         disconnect(); // safety
         new Thread(() -> {
             try {
-                Socket s = new Socket(HOST, PORT);
+                var cfg = ConfigService.getInstance();
+                Socket s = new Socket(cfg.getServerHost(), cfg.getServerPort());
                 PrintWriter w = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true);
                 socket = s;
                 out = w;
@@ -0,0 +1,429 @@
+package app;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Every external-controller connection in the process, on one selector thread. Sockets
+// are non-blocking; reads go through one shared direct buffer, allocated once. Lines in
+// and out are newline-delimited UTF-8, as the server expects. A dropped or refused
+// connection is retried after RECONNECT_MS until it is closed. After useFrames() a
+// connection reads BinaryProtocol frames instead of lines, parsed in place from a
+// pooled buffer.
+//
+// Sending never waits on the peer. Outgoing messages sit in BufferPool buffers in a
+// bounded per-connection queue and go out with one gathering write per wakeup. A
+// snapshot replaces one still waiting at the tail of the queue, so a slow server gets
+// the newest state rather than a backlog of stale ones.
+final class ExternalTransport {
+    private static final long RECONNECT_MS = 1200;
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final int MAX_QUEUED = 64;  // messages waiting per connection
+    private static final int MAX_GATHER = 16;  // buffers per write call
+
+    /** Callbacks run on the transport thread; hand anything touching the game to the FX thread. */
+    interface Handler {
+        void onConnected(Conn c);
+        void onLine(Conn c, String line);
+        /** One frame's payload, opcode first, valid only for the call. After {@link Conn#useFrames}. */
+        default void onFrame(Conn c, ByteBuffer payload) {}
+        void onDisconnected(Conn c);
+    }
+
+    private static ExternalTransport shared;
+
+    /** The process-wide transport, started on first use. */
+    static synchronized ExternalTransport shared() {
+        if (shared == null) {
+            try {
+                shared = new ExternalTransport();
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot open selector", e);
+            }
+        }
+        return shared;
+    }
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<Conn> conns = new ArrayList<>();
+    private final ByteBuffer readBuf = ByteBuffer.allocateDirect(READ_BUFFER);
+    private final byte[] readBytes = new byte[READ_BUFFER];
+
+    private ExternalTransport() throws IOException {
+        selector = Selector.open();
+        Thread t = new Thread(this::loop, "ext-transport");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Starts connecting to host:port; keeps reconnecting until the connection is closed. */
+    Conn connect(String host, int port, Handler handler) {
+        Conn c = new Conn(host, port, handler);
+        run(() -> {
+            conns.add(c);
+            c.open();
+        });
+        return c;
+    }
+
+    private void run(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    final class Conn {
+        private final String host;
+        private final int port;
+        private final Handler handler;
+        // waiting messages; latest is the last of them if it's a snapshot that may
+        // still be replaced. Guarded by outbox and never held across I/O.
+        private final ArrayDeque<ByteBuffer> outbox = new ArrayDeque<>();
+        private ByteBuffer latest;
+        private long dropped, sent;
+        // being written, the first maybe partly; transport thread only
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private volatile int gathered = 0;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final Runnable flushTask = () -> {
+            flushScheduled.set(false);
+            flush();
+        };
+        private byte[] line = new byte[256];
+        private int lineLen = 0;
+        private ByteBuffer frameIn;    // set once reading frames: bytes not yet parsed
+
+        private SocketChannel ch;
+        private SelectionKey key;
+        private volatile boolean connected = false, closed = false;
+        private long retryAt = -1;
+
+        private Conn(String host, int port, Handler handler) {
+            this.host = host;
+            this.port = port;
+            this.handler = handler;
+        }
+
+        String address() { return host + ":" + port; }
+        boolean isConnected() { return connected; }
+
+        /** Messages waiting to be written, including any partly written. */
+        int queueDepth() {
+            synchronized (outbox) {
+                return outbox.size() + gathered;
+            }
+        }
+
+        /** Messages thrown away: snapshots replaced by newer ones, or anything refused by a full queue. */
+        long dropped() {
+            synchronized (outbox) {
+                return dropped;
+            }
+        }
+
+        /** Messages fully written to the socket. */
+        long sent() {
+            synchronized (outbox) {
+                return sent;
+            }
+        }
+
+        /** True while a snapshot is queued that the next one would replace. */
+        boolean snapshotPending() {
+            synchronized (outbox) {
+                return latest != null;
+            }
+        }
+
+        /** Queues one line (newline added) to send in order; see {@link #send(ByteBuffer)}. */
+        boolean send(String text) {
+            return !connected || enqueue(toLine(text), false);
+        }
+
+        /**
+         * Queues bytes to send in order, from position to limit; the buffer then belongs
+         * to the transport, which gives it back to {@link BufferPool}. Any thread; never
+         * blocks. Dropped while disconnected.
+         * @return false if the queue was full and the message was dropped
+         */
+        boolean send(ByteBuffer bytes) {
+            return enqueue(bytes, false);
+        }
+
+        /** Queues a snapshot line; see {@link #sendSnapshot(ByteBuffer)}. */
+        boolean sendSnapshot(String text) {
+            return !connected || enqueue(toLine(text), true);
+        }
+
+        /**
+         * Like {@link #send(ByteBuffer)}, but if the last thing queued is a snapshot not
+         * yet being written, this one replaces it.
+         */
+        boolean sendSnapshot(ByteBuffer bytes) {
+            return enqueue(bytes, true);
+        }
+
+        private static ByteBuffer toLine(String text) {
+            byte[] b = text.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buf = BufferPool.acquire(b.length + 1);
+            buf.put(b).put((byte) '\n').flip();
+            return buf;
+        }
+
+        private boolean enqueue(ByteBuffer bytes, boolean snapshot) {
+            if (!connected) {
+                BufferPool.release(bytes);
+                return true;
+            }
+            synchronized (outbox) {
+                if (snapshot && latest != null) {
+                    outbox.pollLast();
+                    BufferPool.release(latest);
+                    latest = null;
+                    dropped++;
+                }
+                if (outbox.size() >= MAX_QUEUED) {
+                    BufferPool.release(bytes);
+                    dropped++;
+                    return false;
+                }
+                outbox.addLast(bytes);
+                latest = snapshot ? bytes : null;
+            }
+            if (flushScheduled.compareAndSet(false, true)) run(flushTask);
+            return true;
+        }
+
+        /**
+         * From the next byte on, incoming data is {@link BinaryProtocol} frames rather
+         * than lines. Call from {@link Handler#onLine}, so nothing after the switch is
+         * read as text. Lasts until the connection drops.
+         */
+        void useFrames() {
+            if (frameIn == null) frameIn = BufferPool.acquire();
+        }
+
+        /** Disconnects for good. Any thread. */
+        void close() {
+            closed = true;
+            run(() -> {
+                drop(false);
+                conns.remove(this);
+            });
+        }
+
+        private void open() {
+            if (closed) return;
+            retryAt = -1;
+            try {
+                ch = SocketChannel.open();
+                ch.configureBlocking(false);
+                ch.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+                boolean done = ch.connect(new InetSocketAddress(host, port));
+                key = ch.register(selector, done ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+                if (done) established();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[ExternalClient] Connection error: " + e.getMessage());
+                drop(true);
+            }
+        }
+
+        private void established() {
+            // anything that raced in while down was meant for the old connection
+            discardQueued();
+            connected = true;
+            lineLen = 0;
+            System.out.println("[ExternalClient] Connected to " + address());
+            handler.onConnected(this);
+        }
+
+        private void onReady(SelectionKey k) {
+            try {
+                if (k.isConnectable()) {
+                    ch.finishConnect();
+                    k.interestOps(SelectionKey.OP_READ);
+                    established();
+                }
+                if (k.isValid() && k.isReadable()) read();
+                if (k.isValid() && k.isWritable()) flush();
+            } catch (IOException | CancelledKeyException e) {
+                System.out.println("[ExternalClient] Connection error: " + e.getMessage());
+                drop(true);
+            }
+        }
+
+        private void read() throws IOException {
+            if (frameIn != null) {
+                readFrames();
+                return;
+            }
+            while (true) {
+                readBuf.clear();
+                int n = ch.read(readBuf);
+                if (n < 0) {
+                    System.out.println("[ExternalClient] Disconnected (socket closed).");
+                    drop(true);
+                    return;
+                }
+                if (n == 0) return;
+                readBuf.flip();
+                readBuf.get(readBytes, 0, n);
+                for (int i = 0; i < n; i++) {
+                    byte b = readBytes[i];
+                    if (b == '\n') {
+                        String s = new String(line, 0, lineLen, StandardCharsets.UTF_8);
+                        lineLen = 0;
+                        handler.onLine(this, s);
+                        if (!connected) return;
+                        if (frameIn != null) {
+                            // the rest of this read is already frames
+                            if (n - i - 1 > frameIn.remaining()) throw new IOException("frame overflow");
+                            frameIn.put(readBytes, i + 1, n - i - 1);
+                            frames();
+                            if (connected) readFrames();
+                            return;
+                        }
+                    } else {
+                        if (lineLen == line.length) line = Arrays.copyOf(line, lineLen * 2);
+                        line[lineLen++] = b;
+                    }
+                }
+            }
+        }
+
+        private void readFrames() throws IOException {
+            while (connected) {
+                int n = ch.read(frameIn);
+                if (n < 0) {
+                    System.out.println("[ExternalClient] Disconnected (socket closed).");
+                    drop(true);
+                    return;
+                }
+                if (n == 0) return;
+                frames();
+            }
+        }
+
+        // hands every complete frame in frameIn to the handler and keeps the tail
+        private void frames() throws IOException {
+            ByteBuffer in = frameIn;
+            in.flip();
+            while (in.remaining() >= 2) {
+                int len = in.getShort(in.position()) & 0xFFFF;
+                if (len > in.capacity() - 2) throw new IOException("frame too large: " + len);
+                if (in.remaining() < 2 + len) break;
+                int end = in.position() + 2 + len, limit = in.limit();
+                in.position(in.position() + 2).limit(end);
+                if (len > 0) handler.onFrame(this, in);
+                if (!connected) return;
+                in.limit(limit).position(end);
+            }
+            in.compact();
+        }
+
+        // writes as much of the queue as the socket takes, MAX_GATHER buffers at a time
+        private void flush() {
+            if (!connected || key == null || !key.isValid()) return;
+            try {
+                while (true) {
+                    int n = gathered;
+                    synchronized (outbox) {
+                        while (n < MAX_GATHER && !outbox.isEmpty()) {
+                            ByteBuffer b = outbox.pollFirst();
+                            if (b == latest) latest = null; // being written now; too late to replace
+                            gather[n++] = b;
+                        }
+                        gathered = n;
+                    }
+                    if (n == 0) break;
+                    ch.write(gather, 0, n);
+                    int done = 0;
+                    while (done < n && !gather[done].hasRemaining()) BufferPool.release(gather[done++]);
+                    System.arraycopy(gather, done, gather, 0, n - done);
+                    Arrays.fill(gather, n - done, n, null);
+                    synchronized (outbox) {
+                        gathered = n - done;
+                        sent += done;
+                    }
+                    if (n - done > 0) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException | CancelledKeyException e) {
+                System.out.println("[ExternalClient] Connection error: " + e.getMessage());
+                drop(true);
+            }
+        }
+
+        private void discardQueued() {
+            synchronized (outbox) {
+                for (ByteBuffer b; (b = outbox.poll()) != null; ) BufferPool.release(b);
+                latest = null;
+                for (int i = 0; i < gathered; i++) {
+                    BufferPool.release(gather[i]);
+                    gather[i] = null;
+                }
+                gathered = 0;
+            }
+        }
+
+        private void drop(boolean retry) {
+            boolean was = connected;
+            connected = false;
+            if (key != null) key.cancel();
+            try { if (ch != null) ch.close(); } catch (IOException ignored) {}
+            key = null;
+            ch = null;
+            discardQueued();
+            BufferPool.release(frameIn);
+            frameIn = null;
+            if (was) handler.onDisconnected(this);
+            if (retry && !closed) retryAt = System.currentTimeMillis() + RECONNECT_MS;
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            try {
+                long wait = 0;
+                long now = System.currentTimeMillis();
+                for (Conn c : conns) {
+                    if (c.retryAt < 0) continue;
+                    long d = c.retryAt - now;
+                    if (d <= 0) wait = 1;
+                    else wait = wait == 0 ? d : Math.min(wait, d);
+                }
+                selector.select(wait);
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey k = it.next();
+                    it.remove();
+                    if (k.isValid()) ((Conn) k.attachment()).onReady(k);
+                }
+                now = System.currentTimeMillis();
+                for (Conn c : List.copyOf(conns)) {
+                    if (c.retryAt >= 0 && c.retryAt <= now) c.open();
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[ExternalTransport] " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package app;
+
+import app.engine.Board;
+import app.engine.Engine;
+import app.engine.PieceGeometry;
+import app.engine.PlayerState;
+import app.engine.Tetromino;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.paint.Color;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+// Paints one board and its preview, touching only rows the engine marked dirty.
+// Rows are composed from cached block sprites in an ARGB pixel buffer, and each run
+// of adjacent dirty rows goes to the canvas as a single setPixels blit.
+final class FieldRenderer {
+    private static final Color PREVIEW_BG = Color.web("#1a1f27");
+    private static final PixelFormat<IntBuffer> FORMAT = PixelFormat.getIntArgbInstance();
+
+    private final Canvas field, preview;
+    private final int cell;
+    private final BlockSprites sprites;
+
+    private int[] frame = new int[0];
+    private int[] rowSprites = new int[0];
+    private int cols, rows;
+    private boolean full = true;
+    private long lastSeq = -1;
+
+    FieldRenderer(Canvas field, Canvas preview, Color[] colors, int cell) {
+        this.field = field;
+        this.preview = preview;
+        this.cell = cell;
+        this.sprites = BlockSprites.forSize(colors, cell);
+    }
+
+    /** Forces the next render to repaint everything, e.g. after a new game or resize. */
+    void invalidate() {
+        full = true;
+        lastSeq = -1;
+    }
+
+    void render(Engine engine, PlayerState p) {
+        long dirty = p.takeDirtyRows();
+        if (cols != p.cols() || rows != p.rows()) {
+            cols = p.cols();
+            rows = p.rows();
+            frame = new int[cols * cell * rows * cell];
+            rowSprites = new int[cols];
+            full = true;
+        }
+        if (full) {
+            dirty = -1L;
+            full = false;
+        }
+        dirty &= -1L >>> (64 - rows);
+        int w = cols * cell;
+        var writer = field.getGraphicsContext2D().getPixelWriter();
+        while (dirty != 0) {
+            int from = Long.numberOfTrailingZeros(dirty);
+            int to = Long.numberOfTrailingZeros(~(dirty >>> from)) + from; // exclusive
+            for (int r = from; r < to; r++) composeRow(p, r);
+            writer.setPixels(0, from * cell, w, (to - from) * cell, FORMAT, frame, from * cell * w, w);
+            dirty &= to >= 64 ? 0 : -1L << to;
+        }
+        if (p.seqIdx() != lastSeq) {
+            lastSeq = p.seqIdx();
+            drawPreview(engine.peekNext(p));
+        }
+    }
+
+    private void composeRow(PlayerState p, int r) {
+        Board board = p.board();
+        int[] idx = rowSprites;
+        Arrays.fill(idx, 0);
+        boolean flash = p.isRowClearing(r);
+        for (int bits = board.row(r); bits != 0; bits &= bits - 1) {
+            int c = Integer.numberOfTrailingZeros(bits);
+            idx[c] = flash ? sprites.flash : board.color(r, c);
+        }
+        if (!p.isClearing() && !p.isDead() && p.piece() != null) {
+            PieceGeometry geo = p.pieceGeometry(p.pieceRot());
+            int[] cr = geo.cellRows(), cc = geo.cellCols();
+            for (int i = 0; i < cr.length; i++) {
+                int c = p.pieceCol() + cc[i];
+                if (p.pieceRow() + cr[i] == r && c >= 0 && c < cols) idx[c] = p.pieceId();
+            }
+        }
+
+        int w = cols * cell, base = r * cell * w;
+        for (int c = 0; c < cols; c++) {
+            int[] px = sprites.pixels(idx[c]);
+            for (int y = 0; y < cell; y++) System.arraycopy(px, y * cell, frame, base + y * w + c * cell, cell);
+        }
+    }
+
+    private void drawPreview(Tetromino n) {
+        GraphicsContext pg = preview.getGraphicsContext2D();
+        pg.setFill(PREVIEW_BG);
+        pg.fillRect(0, 0, preview.getWidth(), preview.getHeight());
+        if (n == null) return;
+        PieceGeometry geo = n.geometry(0);
+        int[] cr = geo.cellRows(), cc = geo.cellCols();
+        int w = 4 * cell, h = 4 * cell;
+        int offsetX = (int) ((preview.getWidth() - w) / 2);
+        int offsetY = (int) ((preview.getHeight() - h) / 2);
+        for (int i = 0; i < cr.length; i++) {
+            pg.drawImage(sprites.image(n.id()), offsetX + cc[i] * cell, offsetY + cr[i] * cell);
+        }
+    }
+}
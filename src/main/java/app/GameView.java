@@ -1,14 +1,17 @@
 package app;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.PauseTransition;
-import javafx.animation.Timeline;
+import app.engine.Action;
+import app.engine.Board;
+import app.engine.Clock;
+import app.engine.Engine;
+import app.engine.PieceGeometry;
+import app.engine.PlayerState;
+import app.engine.Replay;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Separator;
@@ -16,36 +19,19 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
-import java.util.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
 
 public class GameView extends ScreenBase {
-    interface Player {
-        int cols();
-        int rows();
-        int[][] board();
-        int pieceId();
-        int pieceRow();
-        int pieceCol();
-        int pieceRot();
-        int[][] pieceShape(int rot);
-        boolean canPlace(int row, int col, int rot);
-        void moveLeft();
-        void moveRight();
-        void softDrop();
-        void hardDrop();
-        void rotate();
-    }
-
-
     private int COLS, ROWS;
     private static final int CELL = 24;
-    private static final int LOCK_DELAY_MS = 500;
-    private static final int CLEAR_FLASH_MS = 350;
-
-    private static final Color BG = Color.web("#111418");
-    private static final Color GRID = Color.web("#2a2f3a");
 
     private final Color[] colors = {
             Color.TRANSPARENT,
@@ -59,20 +45,31 @@ public class GameView extends ScreenBase {
     private Scene sceneRef = null;
     private boolean gameOverShown = false;
 
-
-
-    private final List<Tetromino> seq = new ArrayList<>();
-    private int seqWritePtr = 0;
-
+    private Engine engine;
     private PState p1, p2;
 
     private Canvas playCanvas1, playCanvas2, preview1, preview2;
+    private FieldRenderer renderer1, renderer2;
     private Label topScoreLbl;
 
-    private Timeline gravityTick;
-    private final SimpleAI ai = new SimpleAI();
+    private RenderScheduler renderLoop;
+    private final TranspositionTable aiCache = new TranspositionTable(1 << 18, 64);
+    private int extCommandsPerFrame = 1;
+
+    private static final Path REPLAY_DIR = Paths.get("replays");
+    // every game played here is recorded; a view made with a replay only plays it back
+    private final Replay replay;
+    private Replay.Recorder recorder;
+    private long replayStart; // wall time that play time 0 of the replay maps to
+    private static final long REPLAY_STEP_MS = 10_000;
+
+    public GameView() { this(null); }
+
+    /** Plays {@code replay} back at real speed instead of starting a game. */
+    public GameView(Replay replay) { this.replay = replay; }
 
     private boolean isExtendTwoPlayer() {
+        if (replay != null) return replay.players() > 1;
         var cfg = ConfigService.getInstance();
         return cfg.isExtendedMode() && cfg.getMode() == ConfigService.Mode.TWO_PLAYER;
     }
@@ -83,8 +80,8 @@ public class GameView extends ScreenBase {
         applyConfig();
 
         var cfg = ConfigService.getInstance();
-        p1 = new PState(1, cfg.getPlayer1Type(), COLS, ROWS);
-        p2 = isExtendTwoPlayer() ? new PState(2, cfg.getPlayer2Type(), COLS, ROWS) : null;
+        p1 = new PState(1, cfg.getPlayer1Type());
+        p2 = isExtendTwoPlayer() ? new PState(2, cfg.getPlayer2Type()) : null;
 
         BorderPane root = new BorderPane();
 
@@ -100,6 +97,7 @@ public class GameView extends ScreenBase {
 
         playCanvas1 = new Canvas(COLS * CELL, ROWS * CELL);
         preview1 = new Canvas(6 * CELL, 6 * CELL);
+        renderer1 = new FieldRenderer(playCanvas1, preview1, colors, CELL);
         VBox side1 = buildSidebar("Player 1", p1, preview1);
         HBox p1Block = new HBox(10, playCanvas1, side1);
         p1Block.setAlignment(Pos.CENTER_LEFT);
@@ -109,6 +107,7 @@ public class GameView extends ScreenBase {
         if (twoPlayer) {
             playCanvas2 = new Canvas(COLS * CELL, ROWS * CELL);
             preview2 = new Canvas(6 * CELL, 6 * CELL);
+            renderer2 = new FieldRenderer(playCanvas2, preview2, colors, CELL);
             VBox side2 = buildSidebar("Player 2", p2, preview2);
             HBox p2Block = new HBox(10, playCanvas2, side2);
             p2Block.setAlignment(Pos.CENTER_LEFT);
@@ -121,11 +120,11 @@ public class GameView extends ScreenBase {
         back.setDefaultButton(false);
         back.setOnAction(e -> {
             active = false;
-            if (gravityTick != null) gravityTick.stop();
-            if (p1 != null && p1.lockTimer != null) { p1.lockTimer.stop(); p1.lockTimer = null; }
-            if (p2 != null && p2.lockTimer != null) { p2.lockTimer.stop(); p2.lockTimer = null; }
+            if (renderLoop != null) renderLoop.stop();
+            cancelAgents();
             stopExternal(p1);
             stopExternal(p2);
+            saveReplay();
             stage.setScene(Main.buildMenuScene(stage));
         });
         back.addEventFilter(javafx.scene.input.KeyEvent.KEY_PRESSED, ev -> {
@@ -145,7 +144,10 @@ public class GameView extends ScreenBase {
         this.active = true;
         scene.windowProperty().addListener((obs, oldWin, newWin) -> {
             if (newWin != null) {
-                newWin.setOnHidden(ev -> active = false);
+                newWin.setOnHidden(ev -> {
+                    active = false;
+                    if (renderLoop != null) renderLoop.stop();
+                });
             }
         });
 
@@ -166,8 +168,19 @@ public class GameView extends ScreenBase {
                 case P -> { togglePause(); return; }
                 case S -> { cfgNow.setSfxEnabled(!cfgNow.isSfxEnabled()); JsonConfigRepository.save(cfgNow); return; }
                 case M -> { cfgNow.setMusicEnabled(!cfgNow.isMusicEnabled()); JsonConfigRepository.save(cfgNow); return; }
+                case F -> { logFrameStats(); return; }
                 default -> {}
             }
+            if (replay != null) {
+                switch (e.getCode()) {
+                    case LEFT -> seekReplay(replay.position() - REPLAY_STEP_MS);
+                    case RIGHT -> seekReplay(replay.position() + REPLAY_STEP_MS);
+                    case HOME -> seekReplay(0);
+                    case E, END -> seekReplay(replay.endTime()); // full speed to the end
+                    default -> {}
+                }
+                return;
+            }
             if (paused) return;
 
             if (isExtendTwoPlayer()) {
@@ -177,12 +190,12 @@ public class GameView extends ScreenBase {
                 handleP1_Controls_Single(e.getCode());
             }
 
-            redrawAll();
+            requestRender();
         });
 
         var cs = ConfigService.getInstance();
         cs.addListener(c -> {
-            if (!active || stage.getScene() != scene) return;
+            if (!active || stage.getScene() != scene || replay != null) return;
 
             boolean sizeChanged = (c.getFieldWidth() != COLS || c.getFieldHeight() != ROWS);
             boolean wantP2 = isExtendTwoPlayer();
@@ -209,7 +222,6 @@ public class GameView extends ScreenBase {
         });
 
         newGame();
-        redrawAll();
         return scene;
     }
 
@@ -228,7 +240,9 @@ public class GameView extends ScreenBase {
         info.setAlignment(Pos.TOP_CENTER);
 
         if (target.type == ConfigService.PlayerType.EXTERNAL) {
-            Label connLbl = new Label("External: disconnected (start server on localhost:3000)");
+            var cfg = ConfigService.getInstance();
+            Label connLbl = new Label("External: disconnected (start server on "
+                    + cfg.getServerHost() + ":" + cfg.getServerPort() + ")");
             info.getChildren().add(1, connLbl); // insert right under the title
             target.uiConn = connLbl;
         }
@@ -252,6 +266,11 @@ public class GameView extends ScreenBase {
     }
 
     private void applyConfig() {
+        if (replay != null) {
+            COLS = replay.cols();
+            ROWS = replay.rows();
+            return;
+        }
         var cfg = ConfigService.getInstance();
         COLS = cfg.getFieldWidth();
         ROWS = cfg.getFieldHeight();
@@ -260,10 +279,10 @@ public class GameView extends ScreenBase {
     private void handleP1_Controls_Single(KeyCode code) {
         if (p1.type != ConfigService.PlayerType.HUMAN) return;
         switch (code) {
-            case COMMA, LEFT -> p1.moveLeft();
-            case PERIOD, RIGHT -> p1.moveRight();
-            case SPACE, DOWN -> p1.softDrop();
-            case L, UP -> p1.rotate();
+            case COMMA, LEFT -> p1.s.moveLeft();
+            case PERIOD, RIGHT -> p1.s.moveRight();
+            case SPACE, DOWN -> p1.s.softDrop();
+            case L, UP -> p1.s.rotate();
             default -> {}
         }
     }
@@ -271,10 +290,10 @@ public class GameView extends ScreenBase {
     private void handleP1_Controls_Extend(KeyCode code) {
         if (p1.type != ConfigService.PlayerType.HUMAN) return;
         switch (code) {
-            case COMMA -> p1.moveLeft();
-            case PERIOD -> p1.moveRight();
-            case SPACE -> p1.softDrop();
-            case L -> p1.rotate();
+            case COMMA -> p1.s.moveLeft();
+            case PERIOD -> p1.s.moveRight();
+            case SPACE -> p1.s.softDrop();
+            case L -> p1.s.rotate();
             default -> {}
         }
     }
@@ -282,10 +301,10 @@ public class GameView extends ScreenBase {
     private void handleP2_Controls_Extend(KeyCode code) {
         if (p2 == null || p2.type != ConfigService.PlayerType.HUMAN) return;
         switch (code) {
-            case LEFT  -> p2.moveLeft();
-            case RIGHT -> p2.moveRight();
-            case DOWN, SPACE -> p2.softDrop();
-            case UP    -> p2.rotate();
+            case LEFT  -> p2.s.moveLeft();
+            case RIGHT -> p2.s.moveRight();
+            case DOWN, SPACE -> p2.s.softDrop();
+            case UP    -> p2.s.rotate();
             default -> {}
         }
     }
@@ -293,249 +312,279 @@ public class GameView extends ScreenBase {
 
     private void newGame() {
         gameOverShown = false;
-        ensureSeq();
-
-        resetPlayer(p1);
-        if (p2 != null) resetPlayer(p2);
+        var cfg = ConfigService.getInstance();
+        cancelAgents();
+        saveReplay();
 
-        spawn(p1);
-        if (p2 != null) spawn(p2);
+        if (replay != null) {
+            replay.restart();
+            engine = replay.engine();
+            replayStart = System.currentTimeMillis();
+        } else {
+            engine = new Engine(Clock.system(), COLS, ROWS, p2 != null ? 2 : 1,
+                    cfg.getStartLevel(), System.nanoTime());
+            recorder = Replay.Recorder.of(engine, cfg.getStartLevel(), cfg.getReplayCheckpointSecs() * 1000L);
+        }
+        p1.s = engine.player(0);
+        if (p2 != null) p2.s = engine.player(1);
+        p1.agent = newAgent(p1);
+        if (p2 != null) p2.agent = newAgent(p2);
+        engine.setListener(new Engine.Listener() {
+            @Override public void onGravity(PlayerState s) { byIndex(s).gravityDue = true; }
+            @Override public void onSpawn(PlayerState s) {
+                PState p = byIndex(s);
+                if (p.agent != null) p.agent.onSpawn();
+                updateAllLabels();
+            }
+            @Override public void onGameOver(PlayerState s) { GameView.this.onGameOver(); }
+            @Override public void onInput(PlayerState s, Action a) {
+                if (recorder != null) recorder.input(engine.playTime(), s.index(), a);
+            }
+        });
+        if (replay == null) engine.start();
+        else updateAllLabels();
+        renderer1.invalidate();
+        if (renderer2 != null) renderer2.invalidate();
 
         stopExternal(p1);
         stopExternal(p2);
 
+        extCommandsPerFrame = Math.max(1, cfg.getExternalCommandsPerFrame());
         startExternal(p1);
         startExternal(p2);
 
-        if (gravityTick != null) gravityTick.stop();
-        gravityTick = new Timeline(new KeyFrame(Duration.millis(gravMs(p1.level)), e -> {
-            if (!paused) {
-                tick(p1);
-                if (p1.type == ConfigService.PlayerType.AI) ai.step(p1);
-                if (p2 != null) {
-                    tick(p2);
-                    if (p2.type == ConfigService.PlayerType.AI) ai.step(p2);
-                }
-                redrawAll();
-                if (p1.type == ConfigService.PlayerType.EXTERNAL && p1.client != null) {
-                    p1.client.sendJson(snapshotJson(p1));
-                }
-                if (p2 != null && p2.type == ConfigService.PlayerType.EXTERNAL && p2.client != null) {
-                    p2.client.sendJson(snapshotJson(p2));
-                }
-            }
-        }));
-        gravityTick.setCycleCount(Timeline.INDEFINITE);
-        gravityTick.playFromStart();
+        if (renderLoop != null) renderLoop.stop();
+        renderLoop = new RenderScheduler(this::frame, this::redrawAll);
+        renderLoop.start();
 
         if (p1.type == ConfigService.PlayerType.EXTERNAL && p1.client != null) {
-            p1.client.sendJson(snapshotJson(p1));
+            sendSnapshot(p1);
         }
         if (p2 != null && p2.type == ConfigService.PlayerType.EXTERNAL && p2.client != null) {
-            p2.client.sendJson(snapshotJson(p2));
+            sendSnapshot(p2);
         }
 
         updateAllLabels();
     }
 
+    private AiAgent newAgent(PState p) {
+        if (p.type != ConfigService.PlayerType.AI || replay != null) return null;
+        var cfg = ConfigService.getInstance();
+        var tier = p.id == 1 ? cfg.getPlayer1AiTier() : cfg.getPlayer2AiTier();
+        var weights = Weights.loadOrDefault(); // tuned by AiTuner, if it has been run
+        var planner = new SimpleAI(aiCache, weights, new Random());
+        planner.configure(cfg.getAiLookahead(), Math.max(1, cfg.getAiBeamWidth()));
+        return new AiAgent(p.s, AiAgent.defaultExecutor(), planner,
+                new SimpleAI(aiCache, weights, new Random()), tier.budgetMs());
+    }
+
+    private void cancelAgents() {
+        for (PState p : new PState[]{p1, p2}) {
+            if (p != null && p.agent != null) p.agent.cancel();
+        }
+    }
+
+    private PState byIndex(PlayerState s) {
+        return s.index() == 0 ? p1 : p2;
+    }
+
+    // runs once per pulse of the render loop: commands external players sent since the
+    // last pulse, engine timers, then AI and external players that saw a gravity tick.
+    // However much happened, that is at most one render and one snapshot per player.
+    private void frame() {
+        if (engine == null) return;
+        if (replay != null) {
+            if (paused) return;
+            if (replay.advanceTo(System.currentTimeMillis() - replayStart)) requestRender();
+            if (replay.finished()) onReplayFinished();
+            return;
+        }
+        // drained even while paused, or an external PAUSE could never resume the game
+        boolean changed = drainExternal(p1);
+        if (p2 != null) changed |= drainExternal(p2);
+        if (!paused) {
+            changed |= engine.step();
+            changed |= afterGravity(p1);
+            if (p2 != null) changed |= afterGravity(p2);
+        }
+        if (changed) requestRender();
+        flushSnapshot(p1);
+        if (p2 != null) flushSnapshot(p2);
+    }
+
+    // applies up to extCommandsPerFrame queued commands; the rest wait for the next frame
+    private boolean drainExternal(PState p) {
+        if (p == null || p.client == null) return false;
+        boolean applied = false;
+        for (int n = 0; n < extCommandsPerFrame; n++) {
+            String cmd = p.extQueue.poll();
+            if (cmd == null) break;
+            applied = true;
+            if (cmd.equals("RESYNC")) {
+                if (p.snap != null) p.snap.resync();
+                continue;
+            }
+            if (cmd.equals("PAUSE")) {
+                togglePause();
+                continue;
+            }
+            if (p.s.isDead() || p.s.isClearing()) continue;
+            switch (cmd) {
+                case "LEFT"   -> p.s.moveLeft();
+                case "RIGHT"  -> p.s.moveRight();
+                case "DOWN"   -> p.s.softDrop();
+                case "ROTATE" -> p.s.rotate();
+                case "DROP"   -> p.s.hardDrop();
+                default -> {}
+            }
+        }
+        if (applied) p.snapshotDue = true;
+        return applied;
+    }
+
+    private void flushSnapshot(PState p) {
+        if (!p.snapshotDue) return;
+        p.snapshotDue = false;
+        sendSnapshot(p);
+    }
+
+    private void requestRender() {
+        if (renderLoop != null) renderLoop.requestRender();
+    }
+
+    /** Render loop of the running game, for inspecting frame times. */
+    RenderScheduler renderLoop() { return renderLoop; }
+
+    private void logFrameStats() {
+        if (renderLoop == null) return;
+        System.out.printf("[FRAME] rendered=%d requested=%d last=%.3fms avg=%.3fms worst=%.3fms%n",
+                renderLoop.framesRendered(), renderLoop.renderRequests(),
+                renderLoop.lastFrameNanos() / 1e6, renderLoop.averageFrameMillis(), renderLoop.worstFrameMillis());
+        System.out.println("[AI] cache " + aiCache.stats());
+        for (PState p : new PState[]{p1, p2}) {
+            if (p != null && p.agent != null) {
+                System.out.println("[AI] P" + p.id + " plans=" + p.agent.plansApplied() + " fallbacks=" + p.agent.fallbacks());
+            }
+            if (p != null && p.client != null) {
+                System.out.println("[EXT] P" + p.id + " sent=" + p.client.framesSent() + " queued=" + p.client.queueDepth()
+                        + " dropped=" + p.client.droppedFrames() + (p.client.isBinary() ? " binary" : " json"));
+            }
+            if (p != null && p.snap != null) {
+                System.out.println("[SNAP] P" + p.id + " seq=" + p.snap.seq() + " keyframes=" + p.snap.keyframes()
+                        + " deltas=" + p.snap.deltas());
+            } else if (p != null && p.client != null) {
+                System.out.println("[SNAP] P" + p.id + " full=" + p.fullSnapshots + " lastJsonLen=" + p.lastSnapshotLen);
+            }
+        }
+    }
+
+    private boolean afterGravity(PState p) {
+        if (!p.gravityDue) return false;
+        p.gravityDue = false;
+        if (p.agent != null) p.agent.step();
+        if (p.type == ConfigService.PlayerType.EXTERNAL && p.client != null) p.snapshotDue = true;
+        return true;
+    }
+
     private void startExternal(PState p) {
-        if (p == null || p.type != ConfigService.PlayerType.EXTERNAL) return;
-        if (p.clientThread != null && p.clientThread.isAlive()) return;
+        if (p == null || p.type != ConfigService.PlayerType.EXTERNAL || replay != null) return;
+        if (p.client != null) return;
 
         System.out.println("[EXT] startExternal P" + p.id + " connecting...");
+        p.extQueue.clear();
+        p.snap = ConfigService.getInstance().getSnapshotMode() == ConfigService.SnapshotMode.DELTA
+                ? new SnapshotEncoder(p.id) : null;
 
         p.client = new ExternalClient(
-                "localhost",
-                3000,
-                cmd -> Platform.runLater(() -> {
-                    if (p.dead || p.clearing) return;
-                    switch (cmd) {
-                        case "LEFT"   -> p.moveLeft();
-                        case "RIGHT"  -> p.moveRight();
-                        case "DOWN"   -> p.softDrop();
-                        case "ROTATE" -> p.rotate();
-                        case "DROP"   -> p.hardDrop();
-                        case "PAUSE"  -> togglePause();
-                        default -> {}
-                    }
-                    redrawAll();
-                    if (p.client != null) p.client.sendJson(snapshotJson(p));
-                }),
+                ConfigService.getInstance().getServerHost(),
+                ConfigService.getInstance().getServerPort(),
+                p.extQueue::add, // applied by frame()
                 connected -> Platform.runLater(() -> {
                     if (p.uiConn != null) {
                         p.uiConn.setText(connected ? "External: connected" : "External: disconnected");
                     }
                     System.out.println("[EXT] P" + p.id + " connected=" + connected);
                 }),
-                () -> snapshotJson(p)
+                () -> {
+                    if (p.snap != null) p.snap.resync(); // new connection, new keyframe
+                    return snapshotJson(p);
+                },
+                ConfigService.getInstance().isBinaryProtocol()
         );
 
-        p.clientThread = new Thread(p.client, "ExternalClient-P" + p.id);
-        p.clientThread.setDaemon(true);
-        p.clientThread.start();
+        p.client.start();
     }
 
     private void stopExternal(PState p) {
         if (p == null) return;
         try { if (p.client != null) p.client.stop(); } catch (Exception ignored) {}
         p.client = null;
-        p.clientThread = null;
-    }
-
-
-
-    private void resetPlayer(PState p) {
-        p.dead = false;
-        p.clearing = false;
-        p.clearingRows = new int[0];
-        for (int r = 0; r < ROWS; r++) Arrays.fill(p.board[r], 0);
-        p.score = 0;
-        p.lines = 0;
-        p.seqIdx = 0;
-        p.lockTimer = null;
-        p.initLevel = ConfigService.getInstance().getStartLevel();
-        p.level = p.initLevel;
     }
 
     private void togglePause() {
         paused = !paused;
-        if (gravityTick != null) {
-            if (paused) gravityTick.pause();
-            else gravityTick.play();
+        if (replay != null) {
+            // the replay's clock is its own; resume from where it stopped
+            if (!paused) replayStart = System.currentTimeMillis() - replay.position();
+        } else if (engine != null) {
+            engine.setPaused(paused);
         }
-        redrawAll();
+        requestRender();
     }
 
-    private void spawn(PState p) {
-        ensureSeq();
-        if (p.seqIdx >= seq.size()) ensureSeq();
-        p.piece = seq.get(p.seqIdx++);
-        p.rot = 0;
-        p.row = 0;
-        p.col = Math.max(0, (COLS / 2) - 2);
-        if (!canPlace(p, p.row, p.col, p.rot)) {
-            onGameOver(p);
-        }
+    // jumps through the replay's checkpoints and carries on at real speed from there
+    private void seekReplay(long t) {
+        replay.seek(t);
+        replayStart = System.currentTimeMillis() - replay.position();
+        renderer1.invalidate();
+        if (renderer2 != null) renderer2.invalidate();
         updateAllLabels();
+        requestRender();
+        if (!replay.finished() && renderLoop != null) renderLoop.start();
+        else onReplayFinished();
     }
 
-    private void ensureSeq() {
-        int farthestIdx = Math.max(p1 == null ? 0 : p1.seqIdx, p2 == null ? 0 : p2.seqIdx);
-        if (seqWritePtr - farthestIdx < 14) {
-            List<Tetromino> bag = new ArrayList<>(Arrays.asList(Tetromino.values()));
-            bag.remove(Tetromino.NONE);
-            Collections.shuffle(bag, new Random());
-            seq.addAll(bag);
-            seqWritePtr += bag.size();
-        }
-    }
-
-    private void tick(PState p) {
-        if (p.clearing || p.dead) return;
-        if (canPlace(p, p.row + 1, p.col, p.rot)) {
-            p.row++;
-        } else {
-            if (p.lockTimer == null) {
-                p.lockTimer = new PauseTransition(Duration.millis(LOCK_DELAY_MS));
-                p.lockTimer.setOnFinished(e -> { p.lockTimer = null; lockNowOrClear(p); });
-                p.lockTimer.playFromStart();
-            }
-        }
-    }
-
-    private void lockNowOrClear(PState p) {
-        boolean aboveTop = lockAndCheckAboveTop(p);
-        if (aboveTop) {
-            onGameOver(p);
-            return;
-        }
-
-        int[] full = scanFullRows(p.board);
-        if (full.length > 0) {
-            startFlashThenClear(p, full);
-        } else {
-            spawn(p);
-        }
+    private void onReplayFinished() {
+        if (renderLoop != null) renderLoop.stop();
+        updateAllLabels();
+        topScoreLbl.setText(topScoreLbl.getText() + "   (replay finished)");
     }
 
-
-    private boolean lockAndCheckAboveTop(PState p) {
-        boolean aboveTop = false;
-        int id = p.piece.id();
-        int[][] s = p.piece.shape(p.rot);
-        for (int r = 0; r < 4; r++) for (int c = 0; c < 4; c++) {
-            if (s[r][c] == 0) continue;
-            int rr = p.row + r, cc = p.col + c;
-            if (rr < 0) { aboveTop = true; continue; }
-            if (rr >= 0 && rr < ROWS && cc >= 0 && cc < COLS) p.board[rr][cc] = id;
+    // writes the game recorded so far, if it has any inputs, to replays/
+    private void saveReplay() {
+        if (recorder == null || engine == null) return;
+        Replay.Recorder r = recorder;
+        recorder = null;
+        r.end(engine.playTime());
+        if (r.inputs() == 0) return;
+        try {
+            Files.createDirectories(REPLAY_DIR);
+            Path file = REPLAY_DIR.resolve("replay-"
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".trp");
+            r.save(file);
+            System.out.println("[REPLAY] saved " + file + " (" + r.size() + " bytes)");
+        } catch (IOException e) {
+            System.out.println("[REPLAY] could not save: " + e.getMessage());
         }
-        return aboveTop;
     }
 
-    private void startFlashThenClear(PState p, int[] rows) {
-        p.clearing = true;
-        p.clearingRows = rows;
-        redrawAll();
-        PauseTransition flash = new PauseTransition(Duration.millis(CLEAR_FLASH_MS));
-        flash.setOnFinished(ev -> {
-            applyRowClear(p.board, rows);
-            p.clearing = false;
-            p.clearingRows = new int[0];
-            int add = scoreForLines(rows.length);
-            p.score += add;
-            p.lines += rows.length;
-            int target = p.initLevel + (p.lines / 10);
-            if (target > p.level) {
-                p.level = target;
-                rebuildGravity(); // speeds up
-            }
-            updateAllLabels();
-            spawn(p);
-            redrawAll();
-        });
-        flash.playFromStart();
-    }
-
-    private void rebuildGravity() {
-        if (gravityTick == null) return;
-        gravityTick.stop();
-        gravityTick.getKeyFrames().setAll(new KeyFrame(Duration.millis(gravMs(p1.level)), e -> {
-            if (!paused) {
-                tick(p1);
-                if (p1.type == ConfigService.PlayerType.AI) ai.step(p1);
-                if (p2 != null) {
-                    tick(p2);
-                    if (p2.type == ConfigService.PlayerType.AI) ai.step(p2);
-                }
-                redrawAll();
-            }
-        }));
-        gravityTick.playFromStart();
-    }
-
-    private int gravMs(int lvl) {
-        int base = 700;
-        int ms = base - (lvl - 1) * 60;
-        return Math.max(100, ms);
-    }
-
-    private void onGameOver(PState p) {
-        p.dead = true;
-
+    private void onGameOver() {
         if (!active || stage.getScene() != sceneRef) return;
 
-        if (!(p1.dead && (p2 == null || p2.dead))) return;
+        if (!engine.isOver()) return;
+        if (replay != null) return; // frame() notices the end
+
+        saveReplay();
 
         if (gameOverShown) return;
         gameOverShown = true;
+        cancelAgents();
 
-        if (gravityTick != null) gravityTick.stop();
-        if (p1.lockTimer != null) { p1.lockTimer.stop(); p1.lockTimer = null; }
-        if (p2 != null && p2.lockTimer != null) { p2.lockTimer.stop(); p2.lockTimer = null; }
+        if (renderLoop != null) renderLoop.stop();
 
         Platform.runLater(() -> {
             if (!active || stage.getScene() != sceneRef) return;
-            int best = Math.max(p1.score, p2 == null ? 0 : p2.score);
+            int best = Math.max(p1.s.score(), p2 == null ? 0 : p2.s.score());
             var dialog = new javafx.scene.control.TextInputDialog("Devlin Hampson");
             dialog.setTitle("Game Over");
             dialog.setHeaderText("Game Over — Best Score: " + best);
@@ -547,307 +596,131 @@ public class GameView extends ScreenBase {
     }
 
     private void redrawAll() {
-        drawField(p1, playCanvas1.getGraphicsContext2D());
-        drawPreview(p1, preview1.getGraphicsContext2D(), preview1);
-        if (p2 != null) {
-            drawField(p2, playCanvas2.getGraphicsContext2D());
-            drawPreview(p2, preview2.getGraphicsContext2D(), preview2);
-        }
-    }
-
-    private void drawField(PState p, GraphicsContext g) {
-        g.setFill(BG);
-        g.fillRect(0, 0, COLS * CELL, ROWS * CELL);
-
-        for (int r = 0; r < ROWS; r++) for (int c = 0; c < COLS; c++) {
-            Color color = colors[p.board[r][c]];
-            if (isRowClearing(p, r)) color = Color.WHITE;
-            drawCell(g, c, r, color);
-        }
-
-        if (!p.clearing && !p.dead) {
-            int[][] s = p.piece.shape(p.rot);
-            for (int r = 0; r < 4; r++) for (int c = 0; c < 4; c++) {
-                if (s[r][c] == 0) continue;
-                int rr = p.row + r, cc = p.col + c;
-                if (rr >= 0) drawCell(g, cc, rr, colors[p.piece.id()]);
+        renderer1.render(engine, p1.s);
+        if (p2 != null) renderer2.render(engine, p2.s);
+    }
+
+    // never waits on the server: the client queues it, replacing a snapshot that hasn't
+    // gone out yet. A replaced or refused delta would leave the server a gap, so the
+    // encoder starts over with a keyframe instead.
+    private void sendSnapshot(PState ps) {
+        if (ps.client == null) return;
+        if (ps.snap != null && ps.client.snapshotPending()) ps.snap.resync();
+        boolean queued;
+        if (!ps.client.isBinary()) {
+            queued = ps.client.sendJson(snapshotJson(ps));
+        } else {
+            ByteBuffer frame = BufferPool.acquire(BinaryProtocol.maxFrame(ps.s.cols(), ps.s.rows()));
+            if (ps.snap == null) BinaryProtocol.writeState(frame, ps.id, ps.s);
+            else if (!ps.snap.next(ps.s, frame)) {
+                BufferPool.release(frame);
+                return;
             }
+            queued = ps.client.sendFrame(frame.flip());
         }
+        if (!queued && ps.snap != null) ps.snap.resync();
     }
 
-    private boolean isRowClearing(PState p, int r) {
-        for (int x : p.clearingRows) if (x == r) return true;
-        return false;
-    }
-
-    private void drawCell(GraphicsContext g, int c, int r, Color color) {
-        int x = c * CELL, y = r * CELL;
-        g.setStroke(GRID);
-        g.strokeRect(x, y, CELL, CELL);
-        if (color == Color.TRANSPARENT) return;
-        g.setFill(color);
-        g.fillRect(x + 1, y + 1, CELL - 2, CELL - 2);
-    }
-
-    private void drawPreview(PState p, GraphicsContext pg, Canvas c) {
-        pg.setFill(Color.web("#1a1f27"));
-        pg.fillRect(0, 0, c.getWidth(), c.getHeight());
-        Tetromino n = peekNext(p);
-        if (n == null) return;
-        int[][] s = n.shape(0);
-        int cell = CELL;
-        int w = 4 * cell, h = 4 * cell;
-        int offsetX = (int)((c.getWidth() - w) / 2);
-        int offsetY = (int)((c.getHeight() - h) / 2);
-        for (int r = 0; r < 4; r++) for (int cc = 0; cc < 4; cc++) {
-            if (s[r][cc] == 0) continue;
-            int x = offsetX + cc * cell;
-            int y = offsetY + r * cell;
-            pg.setStroke(GRID);
-            pg.strokeRect(x, y, cell, cell);
-            pg.setFill(colors[n.id()]);
-            pg.fillRect(x + 1, y + 1, cell - 2, cell - 2);
-        }
-    }
-
-    private Tetromino peekNext(PState p) {
-        ensureSeq();
-        int idx = p.seqIdx;
-        if (idx >= seq.size()) return null;
-        return seq.get(idx);
+    // full state, or with delta snapshots on, whatever changed since the last message
+    // (null when nothing did)
+    private String snapshotJson(PState ps) {
+        if (ps.snap != null) return ps.snap.next(ps.s);
+        String json = snapshotJson(ps.id, ps.s);
+        ps.fullSnapshots++;
+        ps.lastSnapshotLen = json.length();
+        return json;
     }
 
-    private String snapshotJson(PState p) {
-        int[][] grid = new int[ROWS][COLS];
-        for (int r = 0; r < ROWS; r++) {
-            System.arraycopy(p.board[r], 0, grid[r], 0, COLS);
-        }
-        if (!p.clearing && !p.dead && p.piece != null) {
-            int[][] s = p.piece.shape(p.rot);
-            int pid = p.piece.id();
-            for (int r = 0; r < 4; r++) for (int c = 0; c < 4; c++) {
-                if (s[r][c] == 0) continue;
-                int rr = p.row + r, cc = p.col + c;
-                if (rr >= 0 && rr < ROWS && cc >= 0 && cc < COLS) grid[rr][cc] = pid;
+    /** Board plus falling piece as the "state" message external controllers receive. */
+    static String snapshotJson(int player, PlayerState p) {
+        Board board = p.board();
+        int rows = p.rows(), cols = p.cols();
+        int[][] grid = new int[rows][cols];
+        for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) grid[r][c] = board.color(r, c);
+        if (!p.isClearing() && !p.isDead() && p.piece() != null) {
+            PieceGeometry geo = p.pieceGeometry(p.pieceRot());
+            int[] cr = geo.cellRows(), ccs = geo.cellCols();
+            int pid = p.pieceId();
+            for (int i = 0; i < cr.length; i++) {
+                int rr = p.pieceRow() + cr[i], cc = p.pieceCol() + ccs[i];
+                if (rr >= 0 && rr < rows && cc >= 0 && cc < cols) grid[rr][cc] = pid;
             }
         }
 
-        int total = ROWS * COLS;
+        int total = rows * cols;
         int[] flat = new int[total];
         int i = 0;
-        for (int r = 0; r < ROWS; r++) for (int c = 0; c < COLS; c++) flat[i++] = grid[r][c];
+        for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) flat[i++] = grid[r][c];
 
         StringBuilder sb = new StringBuilder(64 + total * 3);
         sb.append('{')
                 .append("\"type\":\"state\",")
-                .append("\"player\":").append(p.id).append(',')
-                .append("\"cols\":").append(COLS).append(',')
-                .append("\"rows\":").append(ROWS).append(',')
+                .append("\"player\":").append(player).append(',')
+                .append("\"cols\":").append(cols).append(',')
+                .append("\"rows\":").append(rows).append(',')
                 .append("\"boxes\":[");
         for (int k = 0; k < flat.length; k++) {
             if (k > 0) sb.append(',');
             sb.append(flat[k]);
         }
         sb.append("]}");
-        String json = sb.toString();
-
-        System.out.println("[SNAP] P" + p.id + " rows=" + ROWS + " cols=" + COLS +
-                " flatLen=" + flat.length + " jsonLen=" + json.length());
-
-        return json;
+        return sb.toString();
     }
 
 
     private void updateAllLabels() {
+        if (p1.s == null) return;
         topScoreLbl.setText(
                 String.format("P1 Score %d | P1 Level %d | P1 Lines %d%s",
-                        p1.score, p1.level, p1.lines,
-                        (p2 != null ? String.format("   ||   P2 Score %d | P2 Level %d | P2 Lines %d", p2.score, p2.level, p2.lines) : "")
+                        p1.s.score(), p1.s.level(), p1.s.lines(),
+                        (p2 != null && p2.s != null ? String.format("   ||   P2 Score %d | P2 Level %d | P2 Lines %d", p2.s.score(), p2.s.level(), p2.s.lines()) : "")
                 )
         );
 
         if (p1.uiType != null) {
             p1.uiType.setText("Type: " + p1.type.name());
-            p1.uiInit.setText("Initial Level: " + p1.initLevel);
-            p1.uiLevel.setText("Current Level: " + p1.level);
-            p1.uiLines.setText("Lines: " + p1.lines);
-            p1.uiScore.setText("Score: " + p1.score);
+            p1.uiInit.setText("Initial Level: " + p1.s.initLevel());
+            p1.uiLevel.setText("Current Level: " + p1.s.level());
+            p1.uiLines.setText("Lines: " + p1.s.lines());
+            p1.uiScore.setText("Score: " + p1.s.score());
             p1.uiHigh.setText("High Score: " + topScore());
         }
-        if (p2 != null && p2.uiType != null) {
+        if (p2 != null && p2.s != null && p2.uiType != null) {
             p2.uiType.setText("Type: " + p2.type.name());
-            p2.uiInit.setText("Initial Level: " + p2.initLevel);
-            p2.uiLevel.setText("Current Level: " + p2.level);
-            p2.uiLines.setText("Lines: " + p2.lines);
-            p2.uiScore.setText("Score: " + p2.score);
+            p2.uiInit.setText("Initial Level: " + p2.s.initLevel());
+            p2.uiLevel.setText("Current Level: " + p2.s.level());
+            p2.uiLines.setText("Lines: " + p2.s.lines());
+            p2.uiScore.setText("Score: " + p2.s.score());
             p2.uiHigh.setText("High Score: " + topScore());
         }
     }
 
-    private int scoreForLines(int n) {
-        return switch (n) {
-            case 1 -> 100;
-            case 2 -> 300;
-            case 3 -> 600;
-            case 4 -> 1000;
-            default -> 0;
-        };
-    }
-
     private int topScore() {
         var list = HighScores.top();
         return list.isEmpty() ? 0 : list.get(0).score();
     }
 
-    private boolean canPlace(PState p, int r0, int c0, int rot) {
-        int[][] s = p.piece.shape(rot);
-        for (int r = 0; r < 4; r++) for (int c = 0; c < 4; c++) {
-            if (s[r][c] == 0) continue;
-            int rr = r0 + r, cc = c0 + c;
-            if (cc < 0 || cc >= COLS || rr >= ROWS) return false;
-            if (rr >= 0 && p.board[rr][cc] != 0) return false;
-        }
-        return true;
-    }
-
-    private int[] scanFullRows(int[][] board) {
-        List<Integer> full = new ArrayList<>();
-        for (int r = 0; r < ROWS; r++) {
-            boolean all = true;
-            for (int c = 0; c < COLS; c++) if (board[r][c] == 0) { all = false; break; }
-            if (all) full.add(r);
-        }
-        return full.stream().mapToInt(Integer::intValue).toArray();
-    }
-
-    private void applyRowClear(int[][] board, int[] rows) {
-        Set<Integer> toClear = new HashSet<>();
-        for (int r : rows) toClear.add(r);
-        int write = ROWS - 1;
-        for (int r = ROWS - 1; r >= 0; r--) {
-            if (!toClear.contains(r)) {
-                if (write != r) System.arraycopy(board[r], 0, board[write], 0, COLS);
-                write--;
-            }
-        }
-        for (int r = write; r >= 0; r--) Arrays.fill(board[r], 0);
-    }
-
-    private final class PState implements Player {
+    // UI-side state for one board; the rules state lives in the engine's PlayerState
+    private static final class PState {
         final int id;
         final ConfigService.PlayerType type;
-        final int[][] board;
-
-        Tetromino piece;
-        int row, col, rot;
-
-        int score = 0, lines = 0, level, initLevel;
-        boolean clearing = false, dead = false;
-        int[] clearingRows = new int[0];
-
-        int seqIdx = 0;
-        PauseTransition lockTimer;
+        PlayerState s;
+        AiAgent agent;
+        boolean gravityDue;
 
         Label uiType, uiInit, uiLevel, uiLines, uiScore, uiHigh, uiConn;
 
-        java.util.concurrent.ConcurrentLinkedQueue<String> extQueue = new java.util.concurrent.ConcurrentLinkedQueue<>();
+        // commands from the transport thread, drained on the FX thread by frame()
+        final java.util.concurrent.ConcurrentLinkedQueue<String> extQueue = new java.util.concurrent.ConcurrentLinkedQueue<>();
         ExternalClient client;
-        Thread clientThread;
+        boolean snapshotDue;
+        long fullSnapshots;   // FULL mode: JSON states built, for the F-key stats
+        int lastSnapshotLen;
+        SnapshotEncoder snap; // null unless external and in delta mode
 
-        PState(int id, ConfigService.PlayerType type, int cols, int rows) {
+        PState(int id, ConfigService.PlayerType type) {
             this.id = id;
             this.type = type;
-            this.board = new int[rows][cols];
-            this.initLevel = ConfigService.getInstance().getStartLevel();
-            this.level = this.initLevel;
-        }
-
-        @Override public int cols() { return COLS; }
-        @Override public int rows() { return ROWS; }
-        @Override public int[][] board() { return board; }
-        @Override public int pieceId() { return piece == null ? 0 : piece.id(); }
-        @Override public int pieceRow() { return row; }
-        @Override public int pieceCol() { return col; }
-        @Override public int pieceRot() { return rot; }
-        @Override public int[][] pieceShape(int r) { return piece == null ? new int[4][4] : piece.shape(r); }
-        @Override public boolean canPlace(int r0, int c0, int r) { return GameView.this.canPlace(this, r0, c0, r); }
-
-        @Override public void moveLeft()  { tryMove(this, 0, -1); }
-        @Override public void moveRight() { tryMove(this, 0,  1); }
-        @Override public void softDrop()  { softDropOne(this); }
-        @Override public void hardDrop()  { hardDropNow(this); }
-        @Override public void rotate()    { tryRotate(this); }
-    }
-
-
-    // movement helpers
-    private boolean tryMove(PState p, int dr, int dc) {
-        int nr = p.row + dr, nc = p.col + dc;
-        if (canPlace(p, nr, nc, p.rot)) {
-            p.row = nr; p.col = nc;
-            if (p.lockTimer != null && canPlace(p, p.row + 1, p.col, p.rot)) {
-                p.lockTimer.stop(); p.lockTimer = null;
-            }
-            return true;
-        }
-        return false;
-    }
-    private boolean tryRotate(PState p) {
-        int nr = (p.rot + 1) % 4;
-        if (canPlace(p, p.row, p.col, nr)) {
-            p.rot = nr;
-            if (p.lockTimer != null && canPlace(p, p.row + 1, p.col, p.rot)) {
-                p.lockTimer.stop(); p.lockTimer = null;
-            }
-            return true;
-        }
-        return false;
-    }
-    private void softDropOne(PState p) {
-        if (canPlace(p, p.row + 1, p.col, p.rot)) p.row++; else startLock(p);
-    }
-    private void hardDropNow(PState p) {
-        if (p.dead || p.clearing) return;
-
-        if (p.lockTimer != null) { p.lockTimer.stop(); p.lockTimer = null; }
-
-        int dist = 0;
-        while (canPlace(p, p.row + 1, p.col, p.rot)) { p.row++; dist++; }
-        if (dist > 0) p.score += dist * 2;
-
-        lockNowOrClear(p);
-    }
-
-    private void startLock(PState p) {
-        if (p.lockTimer != null) return;
-        p.lockTimer = new PauseTransition(Duration.millis(LOCK_DELAY_MS));
-        p.lockTimer.setOnFinished(ev -> { p.lockTimer = null; lockNowOrClear(p); });
-        p.lockTimer.playFromStart();
-    }
-
-    private enum Tetromino implements Piece {
-        NONE(0, new int[][]{{0,0,0,0},{0,0,0,0},{0,0,0,0},{0,0,0,0}}),
-        I(1, new int[][]{{0,0,0,0},{1,1,1,1},{0,0,0,0},{0,0,0,0}}),
-        O(2, new int[][]{{0,1,1,0},{0,1,1,0},{0,0,0,0},{0,0,0,0}}),
-        T(3, new int[][]{{0,1,0,0},{1,1,1,0},{0,0,0,0},{0,0,0,0}}),
-        S(4, new int[][]{{0,1,1,0},{1,1,0,0},{0,0,0,0},{0,0,0,0}}),
-        Z(5, new int[][]{{1,1,0,0},{0,1,1,0},{0,0,0,0},{0,0,0,0}}),
-        J(6, new int[][]{{1,0,0,0},{1,1,1,0},{0,0,0,0},{0,0,0,0}}),
-        L(7, new int[][]{{0,0,1,0},{1,1,1,0},{0,0,0,0},{0,0,0,0}});
-
-        private final int id;
-        private final int[][] base;
-        Tetromino(int id, int[][] base) { this.id = id; this.base = base; }
-        public int id() { return id; }
-        public int[][] shape(int rot) {
-            int[][] m = base;
-            for (int i = 0; i < rot; i++) m = rotCW(m);
-            return m;
-        }
-        private static int[][] rotCW(int[][] m) {
-            int[][] r = new int[4][4];
-            for (int i = 0; i < 4; i++) for (int j = 0; j < 4; j++) r[j][3 - i] = m[i][j];
-            return r;
         }
     }
 }
@@ -6,7 +6,8 @@ import java.nio.file.*;
 import java.util.*;
 
 public final class HighScores {
-    private static final Path FILE = Paths.get("scores.csv");
+    // overridable so benchmarks and batch runs don't touch the real table
+    private static final Path FILE = Paths.get(System.getProperty("tetris.scores", "scores.csv"));
     private static final int MAX = 10;
     private static final List<Score> list = new ArrayList<>();
 
@@ -15,6 +15,9 @@ public final class JsonConfigRepository {
                 " \"fieldHeight\": " + c.getFieldHeight() + ",\n" +
                 " \"blockSize\": " + c.getBlockSize() + ",\n" +
                 " \"startLevel\": " + c.getStartLevel() + ",\n" +
+                " \"aiLookahead\": " + c.getAiLookahead() + ",\n" +
+                " \"aiBeamWidth\": " + c.getAiBeamWidth() + ",\n" +
+                " \"replayCheckpointSecs\": " + c.getReplayCheckpointSecs() + ",\n" +
                 " \"musicEnabled\": " + c.isMusicEnabled() + ",\n" +
                 " \"sfxEnabled\": " + c.isSfxEnabled() + ",\n" +
                 " \"aiPlay\": " + c.isAiPlay() + ",\n" +
@@ -22,8 +25,13 @@ public final class JsonConfigRepository {
                 " \"mode\": \"" + c.getMode().name() + "\",\n" +
                 " \"player1Type\": \"" + c.getPlayer1Type().name() + "\",\n" +
                 " \"player2Type\": \"" + c.getPlayer2Type().name() + "\",\n" +
+                " \"player1AiTier\": \"" + c.getPlayer1AiTier().name() + "\",\n" +
+                " \"player2AiTier\": \"" + c.getPlayer2AiTier().name() + "\",\n" +
                 " \"serverHost\": \"" + esc(c.getServerHost()) + "\",\n" +
-                " \"serverPort\": " + c.getServerPort() + "\n" +
+                " \"serverPort\": " + c.getServerPort() + ",\n" +
+                " \"snapshotMode\": \"" + c.getSnapshotMode().name() + "\",\n" +
+                " \"binaryProtocol\": " + c.isBinaryProtocol() + ",\n" +
+                " \"externalCommandsPerFrame\": " + c.getExternalCommandsPerFrame() + "\n" +
                 "}\n";
         try {
             Files.writeString(FILE, json, StandardCharsets.UTF_8,
@@ -40,6 +48,9 @@ public final class JsonConfigRepository {
             if (m.containsKey("fieldHeight")) c.setFieldHeight(i(m.get("fieldHeight"), c.getFieldHeight()));
             if (m.containsKey("blockSize"))   c.setBlockSize(i(m.get("blockSize"), c.getBlockSize()));
             if (m.containsKey("startLevel"))  c.setStartLevel(i(m.get("startLevel"), c.getStartLevel()));
+            if (m.containsKey("aiLookahead")) c.setAiLookahead(i(m.get("aiLookahead"), c.getAiLookahead()));
+            if (m.containsKey("aiBeamWidth")) c.setAiBeamWidth(i(m.get("aiBeamWidth"), c.getAiBeamWidth()));
+            if (m.containsKey("replayCheckpointSecs")) c.setReplayCheckpointSecs(i(m.get("replayCheckpointSecs"), c.getReplayCheckpointSecs()));
             if (m.containsKey("musicEnabled"))c.setMusicEnabled(Boolean.parseBoolean(m.get("musicEnabled")));
             if (m.containsKey("sfxEnabled"))  c.setSfxEnabled(Boolean.parseBoolean(m.get("sfxEnabled")));
             if (m.containsKey("aiPlay"))      c.setAiPlay(Boolean.parseBoolean(m.get("aiPlay")));
@@ -47,15 +58,20 @@ public final class JsonConfigRepository {
             if (m.containsKey("mode"))        c.setMode(ConfigService.Mode.valueOf(m.get("mode")));
             if (m.containsKey("player1Type")) c.setPlayer1Type(ConfigService.PlayerType.valueOf(m.get("player1Type")));
             if (m.containsKey("player2Type")) c.setPlayer2Type(ConfigService.PlayerType.valueOf(m.get("player2Type")));
+            if (m.containsKey("player1AiTier")) c.setPlayer1AiTier(ConfigService.AiTier.valueOf(m.get("player1AiTier")));
+            if (m.containsKey("player2AiTier")) c.setPlayer2AiTier(ConfigService.AiTier.valueOf(m.get("player2AiTier")));
             if (m.containsKey("serverHost"))  c.setServerHost(m.get("serverHost"));
             if (m.containsKey("serverPort"))  c.setServerPort(i(m.get("serverPort"), c.getServerPort()));
+            if (m.containsKey("snapshotMode")) c.setSnapshotMode(ConfigService.SnapshotMode.valueOf(m.get("snapshotMode")));
+            if (m.containsKey("binaryProtocol")) c.setBinaryProtocol(Boolean.parseBoolean(m.get("binaryProtocol")));
+            if (m.containsKey("externalCommandsPerFrame")) c.setExternalCommandsPerFrame(i(m.get("externalCommandsPerFrame"), c.getExternalCommandsPerFrame()));
         } catch (IOException ignored) {}
     }
 
     private static String esc(String s){ return s.replace("\"","\\\""); }
     private static int i(String s, int def){ try { return Integer.parseInt(s); } catch(Exception e){ return def; } }
 
-    private static Map<String,String> flat(String json){
+    static Map<String,String> flat(String json){
         Map<String,String> r = new HashMap<>();
         String body = json.trim();
         if (body.startsWith("{")) body = body.substring(1);
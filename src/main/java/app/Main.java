@@ -1,5 +1,6 @@
 package app;
 
+import app.engine.Replay;
 import javafx.application.Application;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -10,6 +11,7 @@ import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public class Main extends Application {
@@ -33,6 +35,7 @@ public class Main extends Application {
         Button play = new Button("Play");
         Button config = new Button("Configuration");
         Button scores = new Button("High Scores");
+        Button replays = new Button("Replays");
         Button controller = new Button("External Controller");
         controller.setMaxWidth(Double.MAX_VALUE);
         controller.setOnAction(e -> ExternalControllerWindow.show());
@@ -51,13 +54,29 @@ public class Main extends Application {
 
         scores.setOnAction(e -> stage.setScene(HighScoresView.create(stage)));
 
+        replays.setMaxWidth(Double.MAX_VALUE);
+        replays.setOnAction(e -> {
+            var chooser = new FileChooser();
+            chooser.setTitle("Open Replay");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Replays", "*.trp"));
+            var dir = new java.io.File("replays");
+            if (dir.isDirectory()) chooser.setInitialDirectory(dir);
+            var file = chooser.showOpenDialog(stage);
+            if (file == null) return;
+            try {
+                stage.setScene(new GameView(Replay.load(file.toPath())).create(stage));
+            } catch (java.io.IOException ex) {
+                new Alert(Alert.AlertType.ERROR, "Could not open replay: " + ex.getMessage(), ButtonType.OK).showAndWait();
+            }
+        });
+
         exit.setOnAction(e -> {
             var alert = new Alert(Alert.AlertType.CONFIRMATION, "Exit the program?", ButtonType.YES, ButtonType.NO);
             alert.setHeaderText("Confirm Exit");
             alert.showAndWait().ifPresent(bt -> { if (bt == ButtonType.YES) stage.close(); });
         });
 
-        VBox buttons = new VBox(12, play, config, scores, controller, exit);
+        VBox buttons = new VBox(12, play, config, scores, replays, controller, exit);
         buttons.setAlignment(Pos.CENTER);
         buttons.setPadding(new Insets(20));
         buttons.setPrefWidth(360);
@@ -84,7 +103,16 @@ public class Main extends Application {
         return box;
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // headless tools; they never touch the toolkit
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            Simulator.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--replay")) {
+            ReplayRunner.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         launch(args);
     }
 }
@@ -0,0 +1,69 @@
+package app;
+
+import javafx.animation.AnimationTimer;
+
+// Single per-vsync loop for a game screen. Each pulse runs the game step, then renders
+// at most once if anything asked for a redraw since the last pulse, so bursts of
+// input or network commands collapse into one frame.
+final class RenderScheduler extends AnimationTimer {
+    private static final int HISTORY = 120;
+
+    private final Runnable step;
+    private final Runnable render;
+    private boolean dirty = true;
+
+    private final long[] renderNanos = new long[HISTORY];
+    private int samples = 0, next = 0;
+    private long frames = 0, requests = 0;
+
+    RenderScheduler(Runnable step, Runnable render) {
+        this.step = step;
+        this.render = render;
+    }
+
+    void requestRender() {
+        dirty = true;
+        requests++;
+    }
+
+    @Override public void handle(long now) {
+        step.run();
+        if (dirty) renderNow();
+    }
+
+    /** Stops pulsing; a frame that was requested but not yet drawn is drawn now. */
+    @Override public void stop() {
+        super.stop();
+        if (dirty) renderNow();
+    }
+
+    private void renderNow() {
+        dirty = false;
+        long t0 = System.nanoTime();
+        render.run();
+        renderNanos[next] = System.nanoTime() - t0;
+        next = (next + 1) % HISTORY;
+        if (samples < HISTORY) samples++;
+        frames++;
+    }
+
+    long framesRendered() { return frames; }
+    long renderRequests() { return requests; }
+
+    long lastFrameNanos() {
+        return samples == 0 ? 0 : renderNanos[(next + HISTORY - 1) % HISTORY];
+    }
+
+    double averageFrameMillis() {
+        if (samples == 0) return 0;
+        long sum = 0;
+        for (int i = 0; i < samples; i++) sum += renderNanos[i];
+        return sum / (samples * 1e6);
+    }
+
+    double worstFrameMillis() {
+        long max = 0;
+        for (int i = 0; i < samples; i++) max = Math.max(max, renderNanos[i]);
+        return max / 1e6;
+    }
+}
@@ -0,0 +1,59 @@
+package app;
+
+import app.engine.Engine;
+import app.engine.PlayerState;
+import app.engine.Replay;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Re-simulates replay files at full speed and prints how each game ended, e.g. to
+ * check a recorded incident or to time the engine on real games.
+ *
+ * <pre>java -cp target/classes app.ReplayRunner [--repeat N] [--seek seconds] file.trp...</pre>
+ * With {@code --seek}, also times a jump to that point through the embedded checkpoints.
+ * Also reachable as {@code app.Main --replay ...}.
+ */
+public final class ReplayRunner {
+    private ReplayRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        int repeat = 1;
+        double seek = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--repeat")) {
+                repeat = Integer.parseInt(args[++i]);
+                continue;
+            }
+            if (args[i].equals("--seek")) {
+                seek = Double.parseDouble(args[++i]);
+                continue;
+            }
+            var file = Paths.get(args[i]);
+            Replay r = Replay.load(file);
+            long t0 = System.nanoTime();
+            for (int k = 0; k < repeat; k++) {
+                r.restart();
+                r.runToEnd();
+            }
+            double secs = (System.nanoTime() - t0) / 1e9 / repeat;
+            Engine e = r.engine();
+            System.out.printf("%s: %dx%d, %d player(s), seed %d, %d inputs and %d checkpoints in %d bytes%n", file,
+                    r.cols(), r.rows(), r.players(), r.seed(), r.inputs(), r.checkpoints(), Files.size(file));
+            for (int p = 0; p < e.playerCount(); p++) {
+                PlayerState s = e.player(p);
+                System.out.printf("  P%d score %d, lines %d, level %d%s%n", p + 1, s.score(), s.lines(), s.level(),
+                        s.isDead() ? ", topped out" : "");
+            }
+            System.out.printf("  %.1f s of play re-simulated in %.2f ms (%.0fx real time)%n",
+                    r.endTime() / 1000.0, secs * 1000, r.endTime() / 1000.0 / secs);
+            if (seek >= 0) {
+                r.restart();
+                long s0 = System.nanoTime();
+                r.seek((long) (seek * 1000));
+                System.out.printf("  seek to %.1f s took %.3f ms%n", r.position() / 1000.0, (System.nanoTime() - s0) / 1e6);
+            }
+        }
+    }
+}
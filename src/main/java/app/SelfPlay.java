@@ -0,0 +1,66 @@
+package app;
+
+import app.engine.Action;
+import app.engine.Engine;
+import app.engine.ManualClock;
+import app.engine.MoveGenerator;
+import app.engine.PlayerState;
+
+// Plays whole single-player games as fast as the CPU allows: no window and no real
+// time. The clock jumps straight to the engine's next timer, and each spawned piece
+// is played along the move generator's path to the strategy's target at once, ending
+// in a hard drop. Results depend only on the seed and the strategy. Not thread-safe;
+// use one instance per thread.
+final class SelfPlay {
+    record Result(long seed, int lines, int score, int pieces, boolean toppedOut) {}
+
+    private final int cols, rows, startLevel, maxPieces;
+    private final MoveGenerator moves;
+    private final Action[] path;
+
+    /** @param maxPieces games still running after this many pieces end there */
+    SelfPlay(int cols, int rows, int startLevel, int maxPieces) {
+        this.cols = cols;
+        this.rows = rows;
+        this.startLevel = startLevel;
+        this.maxPieces = maxPieces;
+        this.moves = new MoveGenerator(cols, rows);
+        this.path = new Action[4 * (rows + 4) * (cols + 4) + 1];
+    }
+
+    Result play(AiStrategy ai, long seed) {
+        ManualClock clock = new ManualClock();
+        Engine engine = new Engine(clock, cols, rows, 1, startLevel, seed);
+        PlayerState p = engine.player(0);
+        int[] spawned = new int[1];
+        engine.setListener(new Engine.Listener() {
+            @Override public void onSpawn(PlayerState s) { spawned[0]++; }
+        });
+        engine.start();
+        int played = 0;
+        while (!engine.isOver() && played < maxPieces) {
+            if (played < spawned[0] && p.pieceId() != 0 && !p.isClearing()) {
+                played++;
+                place(engine, p, ai);
+            } else {
+                long next = engine.nextDeadline();
+                if (next == Long.MAX_VALUE) break;
+                clock.set(next);
+                engine.step();
+            }
+        }
+        return new Result(seed, p.lines(), p.score(), played, p.isDead());
+    }
+
+    // inputs run back to back at one instant, so gravity never gets a say
+    private void place(Engine engine, PlayerState p, AiStrategy ai) {
+        SimpleAI.Plan plan = ai.plan(SimpleAI.snapshot(p, ai.lookahead()));
+        int target = plan == null || moves.generate(p) == 0 ? -1 : moves.find(plan.rot(), plan.row(), plan.col());
+        if (target < 0) {
+            engine.apply(0, Action.DROP);
+            return;
+        }
+        int n = moves.path(target, path);
+        for (int i = 0; i < n; i++) engine.apply(0, path[i]);
+    }
+}
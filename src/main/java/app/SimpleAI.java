@@ -0,0 +1,112 @@
+package app;
+
+import app.engine.MoveGenerator;
+import app.engine.PieceGeometry;
+import app.engine.PlayerState;
+import app.engine.Tetromino;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Chooses where the falling piece should lock. Works on an immutable Snapshot so it can
+// run on any thread; one instance plans one request at a time. The greedy choice is
+// always made first; with lookahead, beam searches one, two, ... preview pieces deep
+// follow, and the deepest one that finishes before the deadline decides.
+final class SimpleAI implements AiStrategy {
+    /** Board and piece state at spawn, copied so the game can move on meanwhile. */
+    record Snapshot(long seq, int cols, int rows, int[] masks,
+                    PieceGeometry[] piece, int row, int col, int rot, Tetromino[] preview) {}
+
+    /** Target lock position for the piece at queue position {@code seq}. */
+    record Plan(long seq, int rot, int row, int col) {}
+
+    private final Random rng;
+    private final BoardEvaluator eval = new BoardEvaluator();
+    private final TranspositionTable cache;
+    private final Weights weights;
+    private MoveGenerator moves;
+    private BeamSearch beam;
+    private PieceGeometry[][] plies = new PieceGeometry[0][];
+
+    SimpleAI(TranspositionTable cache) {
+        this(cache, Weights.DEFAULT, new Random());
+    }
+
+    /** @param rng breaks ties between equally scored placements; seed it for repeatable games */
+    SimpleAI(TranspositionTable cache, Weights weights, Random rng) {
+        this.cache = cache;
+        this.weights = weights;
+        this.rng = rng;
+    }
+
+    /**
+     * Looks up to {@code lookahead} preview pieces past the falling one, keeping the best
+     * {@code beamWidth} boards per piece; 0 plays greedily on the falling piece alone.
+     */
+    void configure(int lookahead, int beamWidth) {
+        if (lookahead <= 0) {
+            beam = null;
+            plies = new PieceGeometry[0][];
+            return;
+        }
+        beam = new BeamSearch(ForkJoinPool.commonPool(), beamWidth, cache, weights);
+        plies = new PieceGeometry[lookahead + 1][4];
+    }
+
+    @Override public int lookahead() { return Math.max(0, plies.length - 1); }
+
+    /** Copies what planning needs out of the live player; call on the game thread. */
+    static Snapshot snapshot(PlayerState s, int lookahead) {
+        PieceGeometry[] piece = new PieceGeometry[4];
+        for (int r = 0; r < 4; r++) piece[r] = s.pieceGeometry(r);
+        Tetromino[] preview = new Tetromino[lookahead];
+        for (int i = 0; i < lookahead; i++) preview[i] = s.peekNext(i);
+        return new Snapshot(s.seqIdx(), s.cols(), s.rows(), s.board().copyMasks(new int[s.rows()]),
+                piece, s.pieceRow(), s.pieceCol(), s.pieceRot(), preview);
+    }
+
+    @Override public Plan plan(Snapshot snap, long deadline) {
+        MoveGenerator gen = generator(snap.cols(), snap.rows());
+        if (gen.generate(snap.masks(), snap.piece(), snap.row(), snap.col(), snap.rot()) == 0) return null;
+        Plan best = greedy(snap, gen);
+        if (beam == null) return best;
+        plies[0] = snap.piece();
+        int depth = Math.min(lookahead(), snap.preview().length);
+        for (int d = 1; d <= depth; d++) {
+            Tetromino next = snap.preview()[d - 1];
+            for (int rot = 0; rot < 4; rot++) plies[d][rot] = next.geometry(rot);
+        }
+        for (int d = 1; d <= depth && System.nanoTime() - deadline < 0; d++) {
+            BeamSearch.Move m = beam.search(snap.masks(), snap.cols(), snap.rows(), plies, d + 1, gen, deadline);
+            if (m == null) break;
+            best = new Plan(snap.seq(), m.rot(), m.row(), m.col());
+        }
+        return best;
+    }
+
+    private Plan greedy(Snapshot snap, MoveGenerator gen) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        eval.load(snap.masks(), snap.rows(), snap.cols());
+        for (int i = 0; i < gen.count(); i++) {
+            eval.evaluate(gen.geometry(gen.rot(i)), gen.row(i), gen.col(i), cache);
+            double score = score(eval);
+            if (score > bestScore || (score == bestScore && rng.nextBoolean())) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return new Plan(snap.seq(), gen.rot(best), gen.row(best), gen.col(best));
+    }
+
+    private MoveGenerator generator(int cols, int rows) {
+        if (moves == null || moves.cols() != cols || moves.rows() != rows) moves = new MoveGenerator(cols, rows);
+        return moves;
+    }
+
+    Weights weights() { return weights; }
+
+    private double score(BoardEvaluator e) {
+        return weights.score(e.linesCleared, e.holesAfter, e.aggHeightAfter, e.bumpinessAfter);
+    }
+}
@@ -0,0 +1,175 @@
+package app;
+
+import app.engine.MoveGenerator;
+import app.engine.Tetromino;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batch of seeded AI games with no window, for comparing engine and AI changes by the
+ * numbers. Each game is a {@link SelfPlay} run; the summary gives throughput, wall and
+ * CPU time, and the spread of lines and scores.
+ *
+ * <pre>java -cp target/classes app.Simulator [--games 100] [--threads N] [--seed 1] [--pieces 2000]
+ *     [--ai greedy|beam] [--lookahead 3] [--beam 8] [--budget ms] [--weights file]
+ * java -cp target/classes app.Simulator --perft</pre>
+ * Also reachable as {@code app.Main --simulate ...}. Board size and start level come
+ * from the saved configuration. {@code --perft} instead checks {@link MoveGenerator}
+ * against known placement counts on an empty 10x20 board and fails on a mismatch.
+ */
+public final class Simulator {
+    private Simulator() {}
+
+    // lock positions on an empty 10x20 board: one piece at a time, then sequences
+    private static final Tetromino[] PERFT_PIECES = {Tetromino.I, Tetromino.O, Tetromino.T,
+            Tetromino.S, Tetromino.Z, Tetromino.J, Tetromino.L};
+    private static final long[] PERFT_SINGLE = {17, 9, 34, 17, 17, 34, 34};
+    private static final Tetromino[] PERFT_SEQ = {Tetromino.T, Tetromino.I, Tetromino.O, Tetromino.S};
+    private static final long[] PERFT_DEPTH = {34, 596, 5542};
+
+    static void perft() {
+        int cols = 10, rows = 20;
+        int[] empty = new int[rows];
+        int failures = 0;
+        for (int i = 0; i < PERFT_PIECES.length; i++) {
+            long n = MoveGenerator.perft(empty, cols, rows, new Tetromino[]{PERFT_PIECES[i]}, 1);
+            failures += perftLine(PERFT_PIECES[i].name(), n, PERFT_SINGLE[i]);
+        }
+        for (int d = 1; d <= PERFT_DEPTH.length; d++) {
+            long start = System.nanoTime();
+            long n = MoveGenerator.perft(empty, cols, rows, PERFT_SEQ, d);
+            failures += perftLine("TIOS depth " + d + String.format(" (%.1f ms)", (System.nanoTime() - start) / 1e6),
+                    n, PERFT_DEPTH[d - 1]);
+        }
+        if (failures > 0) throw new IllegalStateException(failures + " perft count(s) wrong");
+        System.out.println("perft ok");
+    }
+
+    private static int perftLine(String what, long got, long want) {
+        System.out.printf("%-28s %6d%s%n", what, got, got == want ? "" : "  MISMATCH, expected " + want);
+        return got == want ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--perft")) {
+            perft();
+            return;
+        }
+        var cfg = ConfigService.getInstance();
+        JsonConfigRepository.loadInto(cfg);
+        int games = 100, pieces = 2000, lookahead = cfg.getAiLookahead(), beam = cfg.getAiBeamWidth();
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1, budgetMs = 0;
+        String ai = "greedy";
+        Weights weights = Weights.loadOrDefault();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games" -> games = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--pieces" -> pieces = Integer.parseInt(args[++i]);
+                case "--ai" -> ai = args[++i];
+                case "--lookahead" -> lookahead = Integer.parseInt(args[++i]);
+                case "--beam" -> beam = Integer.parseInt(args[++i]);
+                case "--budget" -> budgetMs = Long.parseLong(args[++i]);
+                case "--weights" -> weights = Weights.load(Paths.get(args[++i]));
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if (!ai.equals("greedy") && !ai.equals("beam")) throw new IllegalArgumentException("unknown ai " + ai);
+
+        int cols = cfg.getFieldWidth(), rows = cfg.getFieldHeight(), level = cfg.getStartLevel();
+        int depth = ai.equals("beam") ? lookahead : 0, width = Math.max(1, beam);
+        long budgetNanos = budgetMs * 1_000_000L;
+        Weights w = weights;
+        int maxPieces = pieces;
+        TranspositionTable cache = depth > 0 ? new TranspositionTable(1 << 20, 256) : null;
+        ThreadLocal<SelfPlay> players = ThreadLocal.withInitial(() -> new SelfPlay(cols, rows, level, maxPieces));
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        AtomicLong cpuNanos = new AtomicLong();
+
+        List<Callable<SelfPlay.Result>> tasks = new ArrayList<>(games);
+        for (int g = 0; g < games; g++) {
+            long s = seed + g;
+            tasks.add(() -> {
+                long c0 = mx.getCurrentThreadCpuTime();
+                SimpleAI planner = new SimpleAI(cache, w, new Random(s));
+                planner.configure(depth, width);
+                AiStrategy strategy = budgetNanos <= 0 ? planner : new AiStrategy() {
+                    @Override public int lookahead() { return planner.lookahead(); }
+                    @Override public SimpleAI.Plan plan(SimpleAI.Snapshot snap, long deadline) {
+                        return planner.plan(snap, System.nanoTime() + budgetNanos);
+                    }
+                };
+                SelfPlay.Result r = players.get().play(strategy, s);
+                cpuNanos.addAndGet(mx.getCurrentThreadCpuTime() - c0);
+                return r;
+            });
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "simulator");
+            t.setDaemon(true);
+            return t;
+        });
+        long t0 = System.nanoTime();
+        List<SelfPlay.Result> results = new ArrayList<>(games);
+        try {
+            for (Future<SelfPlay.Result> f : pool.invokeAll(tasks)) results.add(f.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        double wall = (System.nanoTime() - t0) / 1e9;
+        // beam search forks onto the common pool, which the per-thread clock doesn't see
+        double cpu = cpuNanos.get() / 1e9;
+
+        int[] lines = new int[games], scores = new int[games];
+        long totalPieces = 0;
+        int toppedOut = 0;
+        for (int i = 0; i < games; i++) {
+            SelfPlay.Result r = results.get(i);
+            lines[i] = r.lines();
+            scores[i] = r.score();
+            totalPieces += r.pieces();
+            if (r.toppedOut()) toppedOut++;
+        }
+
+        System.out.printf("games       %d on %d threads, %dx%d from level %d, %s%n", games, Math.max(1, threads),
+                cols, rows, level, depth > 0 ? "beam " + depth + "x" + width : "greedy");
+        System.out.printf("time        wall %.2f s, cpu %.2f s (%.1f cores busy)%n", wall, cpu, cpu / wall);
+        System.out.printf("throughput  %.1f games/s, %.0f pieces/s%n", games / wall, totalPieces / wall);
+        System.out.println("lines       " + spread(lines));
+        System.out.println("score       " + spread(scores));
+        System.out.printf("topped out  %d of %d (the rest stopped at %d pieces)%n", toppedOut, games, pieces);
+        if (cache != null) System.out.println("cache       " + cache.stats());
+    }
+
+    private static String spread(int[] v) {
+        int[] s = v.clone();
+        Arrays.sort(s);
+        double mean = 0;
+        for (int x : s) mean += x / (double) s.length;
+        return String.format("mean %.1f  p10 %d  p50 %d  p90 %d  p99 %d  max %d",
+                mean, rank(s, 10), rank(s, 50), rank(s, 90), rank(s, 99), s[s.length - 1]);
+    }
+
+    // nearest-rank percentile of sorted values
+    private static int rank(int[] sorted, int pct) {
+        int i = (int) Math.ceil(pct / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+}
@@ -0,0 +1,178 @@
+package app;
+
+import app.engine.Board;
+import app.engine.PieceGeometry;
+import app.engine.PlayerState;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Delta snapshots for one external connection. The first message, and the first
+ * after {@link #resync}, is a keyframe with every settled cell; after that only the
+ * rows whose cells changed since the last message go out, plus the falling piece.
+ * Every message carries a sequence number one past the previous, so a client that
+ * sees a gap (or loses track) sends RESYNC and gets a fresh keyframe.
+ *
+ * <pre>
+ * {"type":"keyframe","v":1,"seq":0,"player":1,"cols":10,"rows":20,"boxes":[...],"piece":P}
+ * {"type":"delta","v":1,"seq":1,"player":1,"rows":[[19,0,0,3,...]],"piece":P}
+ * P = {"id":3,"row":0,"col":4,"rot":0,"cells":[r,c,r,c,...]} or null
+ * </pre>
+ *
+ * Unlike the full "state" message, boxes and rows hold the settled board only; the
+ * piece is reported on its own. The same messages can be written as binary frames
+ * instead; see {@link BinaryProtocol}. Not thread-safe; use it from the FX thread.
+ */
+final class SnapshotEncoder {
+    static final int VERSION = 1;
+    private static final int NONE = 0, KEY = 1, DELTA = 2;
+
+    private final int player;
+    private final StringBuilder sb = new StringBuilder(256);
+    private int cols, rows;
+    private int[] last = new int[0]; // settled colours as of the last message, row-major
+    private long seq = -1;
+    private long keyframes, deltas;
+    private boolean keyframeDue = true;
+    private long changedRows; // rows in the current delta; boards have at most 64
+    // falling piece as of the last message; id 0 = none
+    private int pieceId, pieceRow, pieceCol, pieceRot;
+
+    SnapshotEncoder(int player) {
+        this.player = player;
+    }
+
+    /** The next message starts over with a keyframe. */
+    void resync() {
+        keyframeDue = true;
+    }
+
+    /** Sequence number of the last message produced, or -1. */
+    long seq() { return seq; }
+    long keyframes() { return keyframes; }
+    long deltas() { return deltas; }
+
+    /** Next message for {@code p}, or null if nothing changed since the last one. */
+    String next(PlayerState p) {
+        int kind = diff(p);
+        if (kind == NONE) return null;
+        sb.setLength(0);
+        sb.append(kind == KEY ? "{\"type\":\"keyframe\",\"v\":" : "{\"type\":\"delta\",\"v\":").append(VERSION)
+                .append(",\"seq\":").append(seq)
+                .append(",\"player\":").append(player);
+        if (kind == KEY) {
+            sb.append(",\"cols\":").append(cols)
+                    .append(",\"rows\":").append(rows)
+                    .append(",\"boxes\":[");
+            for (int i = 0; i < last.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(last[i]);
+            }
+        } else {
+            sb.append(",\"rows\":[");
+            boolean first = true;
+            for (long m = changedRows; m != 0; m &= m - 1) {
+                int r = Long.numberOfTrailingZeros(m);
+                sb.append(first ? "[" : ",[").append(r);
+                for (int c = 0, base = r * cols; c < cols; c++) sb.append(',').append(last[base + c]);
+                sb.append(']');
+                first = false;
+            }
+        }
+        sb.append("],\"piece\":");
+        appendPiece(p);
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Same as {@link #next(PlayerState)}, as a {@link BinaryProtocol} KEYFRAME or DELTA
+     * frame appended to {@code out}, which needs {@link BinaryProtocol#maxFrame} bytes
+     * free. Returns false, writing nothing, if nothing changed.
+     */
+    boolean next(PlayerState p, ByteBuffer out) {
+        int kind = diff(p);
+        if (kind == NONE) return false;
+        int start = BinaryProtocol.beginFrame(out, kind == KEY ? BinaryProtocol.KEYFRAME : BinaryProtocol.DELTA);
+        out.put((byte) player).putInt((int) seq);
+        if (kind == KEY) {
+            out.put((byte) cols).put((byte) rows);
+            for (int r = 0; r < rows; r++) BinaryProtocol.putRow(out, last, r * cols, cols);
+        } else {
+            out.put((byte) Long.bitCount(changedRows));
+            for (long m = changedRows; m != 0; m &= m - 1) {
+                int r = Long.numberOfTrailingZeros(m);
+                out.put((byte) r);
+                BinaryProtocol.putRow(out, last, r * cols, cols);
+            }
+        }
+        BinaryProtocol.putPiece(out, pieceId, pieceRow, pieceCol, pieceRot,
+                pieceId == 0 ? null : p.pieceGeometry(pieceRot));
+        BinaryProtocol.endFrame(out, start);
+        return true;
+    }
+
+    // brings last[] and the piece up to date and numbers the message, if there is one
+    private int diff(PlayerState p) {
+        if (keyframeDue || p.cols() != cols || p.rows() != rows) {
+            keyframeDue = false;
+            cols = p.cols();
+            rows = p.rows();
+            if (last.length != rows * cols) last = new int[rows * cols];
+            Board board = p.board();
+            for (int r = 0; r < rows; r++) for (int c = 0; c < cols; c++) last[r * cols + c] = board.color(r, c);
+            updatePiece(p);
+            seq++;
+            keyframes++;
+            return KEY;
+        }
+        Board board = p.board();
+        changedRows = 0;
+        for (int r = 0; r < rows; r++) {
+            int base = r * cols;
+            for (int c = 0; c < cols; c++) {
+                int v = board.color(r, c);
+                if (v != last[base + c]) {
+                    last[base + c] = v;
+                    changedRows |= 1L << r;
+                }
+            }
+        }
+        boolean pieceMoved = updatePiece(p);
+        if (changedRows == 0 && !pieceMoved) return NONE;
+        seq++;
+        deltas++;
+        return DELTA;
+    }
+
+    // records the piece the client will have seen; true if it differs from before
+    private boolean updatePiece(PlayerState p) {
+        boolean shown = !p.isClearing() && !p.isDead() && p.pieceId() != 0;
+        int id = shown ? p.pieceId() : 0;
+        int row = shown ? p.pieceRow() : 0, col = shown ? p.pieceCol() : 0, rot = shown ? p.pieceRot() : 0;
+        boolean moved = id != pieceId || row != pieceRow || col != pieceCol || rot != pieceRot;
+        pieceId = id;
+        pieceRow = row;
+        pieceCol = col;
+        pieceRot = rot;
+        return moved;
+    }
+
+    private void appendPiece(PlayerState p) {
+        if (pieceId == 0) {
+            sb.append("null");
+            return;
+        }
+        sb.append("{\"id\":").append(pieceId)
+                .append(",\"row\":").append(pieceRow)
+                .append(",\"col\":").append(pieceCol)
+                .append(",\"rot\":").append(pieceRot)
+                .append(",\"cells\":[");
+        PieceGeometry geo = p.pieceGeometry(pieceRot);
+        int[] cr = geo.cellRows(), cc = geo.cellCols();
+        for (int i = 0; i < cr.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(pieceRow + cr[i]).append(',').append(pieceCol + cc[i]);
+        }
+        sb.append("]}");
+    }
+}
@@ -0,0 +1,170 @@
+package app;
+
+import app.engine.PieceGeometry;
+
+import java.util.Arrays;
+
+// Bounded cache of placement evaluations keyed by (board hash, piece, rotation, column),
+// plus the landing row for placements that aren't plain drops.
+// Entries live in fixed arrays split into lock stripes; inside a stripe a key maps to a
+// bucket of WAYS slots, and a full bucket evicts with the clock (second chance) rule
+// using one reference bit per slot. Nothing is allocated after construction.
+final class TranspositionTable {
+    static final long MISS = Long.MIN_VALUE;
+
+    private static final int WAYS = 4;
+
+    private final Stripe[] stripes;
+    private final int stripeMask, bucketMask;
+
+    private static final class Stripe {
+        final long[] keys, values;
+        final boolean[] referenced;
+        final byte[] hand;
+        int size;
+        // counted under the stripe lock, summed when reporting
+        long hits, misses, evictions;
+
+        Stripe(int slots) {
+            keys = new long[slots];
+            values = new long[slots];
+            referenced = new boolean[slots];
+            hand = new byte[slots / WAYS];
+        }
+    }
+
+    /** @param entries total slots, rounded up to a power of two; stripes likewise */
+    TranspositionTable(int entries, int stripeCount) {
+        int s = pow2(stripeCount);
+        int perStripe = Math.max(WAYS, pow2(entries / s));
+        stripes = new Stripe[s];
+        for (int i = 0; i < s; i++) stripes[i] = new Stripe(perStripe);
+        stripeMask = s - 1;
+        bucketMask = perStripe / WAYS - 1;
+    }
+
+    /** Row value for entries that cover a straight drop, wherever the piece lands. */
+    static final int DROPPED = 0x80;
+
+    /**
+     * Key for placing {@code g} at (row, col) on a board with the given hash and size;
+     * the 4x4 cell pattern stands for piece and rotation.
+     */
+    static long key(long boardHash, int cols, int rows, PieceGeometry g, int row, int col) {
+        int[] m = g.rowMasks();
+        long shape = m[0] | m[1] << 4 | m[2] << 8 | m[3] << 12;
+        long k = boardHash ^ mix(shape << 32 | (long) (row & 0xFF) << 24 | (long) (col & 0xFF) << 16
+                | (long) cols << 8 | rows);
+        return k == 0 ? 1 : k;
+    }
+
+    /** Stored value for {@code key}, or {@link #MISS}. */
+    long get(long key) {
+        Stripe st = stripes[(int) (key >>> 32) & stripeMask];
+        int base = ((int) key & bucketMask) * WAYS;
+        synchronized (st) {
+            for (int i = base; i < base + WAYS; i++) {
+                if (st.keys[i] == key) {
+                    st.referenced[i] = true;
+                    st.hits++;
+                    return st.values[i];
+                }
+            }
+            st.misses++;
+        }
+        return MISS;
+    }
+
+    void put(long key, long value) {
+        Stripe st = stripes[(int) (key >>> 32) & stripeMask];
+        int bucket = (int) key & bucketMask, base = bucket * WAYS;
+        synchronized (st) {
+            int free = -1;
+            for (int i = base; i < base + WAYS; i++) {
+                if (st.keys[i] == key) {
+                    st.values[i] = value;
+                    return;
+                }
+                if (free < 0 && st.keys[i] == 0) free = i;
+            }
+            if (free < 0) {
+                int h = st.hand[bucket];
+                while (st.referenced[base + h]) {
+                    st.referenced[base + h] = false;
+                    h = (h + 1) % WAYS;
+                }
+                free = base + h;
+                st.hand[bucket] = (byte) ((h + 1) % WAYS);
+                st.evictions++;
+            } else {
+                st.size++;
+            }
+            st.keys[free] = key;
+            st.values[free] = value;
+            st.referenced[free] = false;
+        }
+    }
+
+    void clear() {
+        for (Stripe st : stripes) {
+            synchronized (st) {
+                Arrays.fill(st.keys, 0);
+                Arrays.fill(st.referenced, false);
+                st.size = 0;
+                st.hits = st.misses = st.evictions = 0;
+            }
+        }
+    }
+
+    long hits() {
+        long n = 0;
+        for (Stripe st : stripes) synchronized (st) { n += st.hits; }
+        return n;
+    }
+
+    long misses() {
+        long n = 0;
+        for (Stripe st : stripes) synchronized (st) { n += st.misses; }
+        return n;
+    }
+
+    long evictions() {
+        long n = 0;
+        for (Stripe st : stripes) synchronized (st) { n += st.evictions; }
+        return n;
+    }
+
+    double hitRate() {
+        long h = hits(), total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    int size() {
+        int n = 0;
+        for (Stripe st : stripes) synchronized (st) { n += st.size; }
+        return n;
+    }
+
+    int capacity() { return stripes.length * stripes[0].keys.length; }
+
+    /** Bytes held by the slot arrays. */
+    long memoryBytes() {
+        long slots = capacity();
+        return slots * (8 + 8 + 1) + (long) stripes.length * stripes[0].hand.length;
+    }
+
+    String stats() {
+        return String.format("entries=%d/%d hits=%d misses=%d hitRate=%.1f%% evictions=%d mem=%.1fMB",
+                size(), capacity(), hits(), misses(), hitRate() * 100, evictions(), memoryBytes() / 1048576.0);
+    }
+
+    private static int pow2(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
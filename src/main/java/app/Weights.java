@@ -0,0 +1,72 @@
+package app;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+// Heuristic weights the AI scores placements with: a reward per cleared line and
+// penalties per hole, per cell of aggregate height and per step of bumpiness. Only
+// the ratios matter to the AI, so tuned sets are stored at unit length.
+record Weights(double lines, double holes, double aggHeight, double bumpiness) {
+    static final Weights DEFAULT = new Weights(10000, 150, 5, 15);
+    /** Where the tuner exports to and the game loads from. */
+    static final Path FILE = Paths.get("ai-weights.json");
+
+    static final int SIZE = 4;
+
+    double score(int lines, int holes, int aggHeight, int bumpiness) {
+        return lines * this.lines
+                - holes * this.holes
+                - aggHeight * this.aggHeight
+                - bumpiness * this.bumpiness;
+    }
+
+    static Weights of(double[] v) { return new Weights(v[0], v[1], v[2], v[3]); }
+
+    double[] toArray() { return new double[]{lines, holes, aggHeight, bumpiness}; }
+
+    Weights normalized() {
+        double n = Math.sqrt(lines * lines + holes * holes + aggHeight * aggHeight + bumpiness * bumpiness);
+        return n == 0 ? this : new Weights(lines / n, holes / n, aggHeight / n, bumpiness / n);
+    }
+
+    /** The exported weights if there are any, else the defaults. */
+    static Weights loadOrDefault() {
+        if (!Files.exists(FILE)) return DEFAULT;
+        try {
+            return load(FILE);
+        } catch (IOException e) {
+            return DEFAULT;
+        }
+    }
+
+    static Weights load(Path file) throws IOException {
+        return read(JsonConfigRepository.flat(Files.readString(file, StandardCharsets.UTF_8)), "", DEFAULT);
+    }
+
+    void save(Path file) throws IOException {
+        Files.writeString(file, "{\n" + json("") + "\n}\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /** The fields as flat JSON members, keys prefixed with {@code prefix}. */
+    String json(String prefix) {
+        return " \"" + prefix + "lines\": " + lines + ",\n" +
+                " \"" + prefix + "holes\": " + holes + ",\n" +
+                " \"" + prefix + "aggHeight\": " + aggHeight + ",\n" +
+                " \"" + prefix + "bumpiness\": " + bumpiness;
+    }
+
+    static Weights read(Map<String, String> m, String prefix, Weights def) {
+        return new Weights(d(m.get(prefix + "lines"), def.lines), d(m.get(prefix + "holes"), def.holes),
+                d(m.get(prefix + "aggHeight"), def.aggHeight), d(m.get(prefix + "bumpiness"), def.bumpiness));
+    }
+
+    private static double d(String s, double def) {
+        try { return Double.parseDouble(s); } catch (Exception e) { return def; }
+    }
+}
@@ -0,0 +1,11 @@
+package app.engine;
+
+public enum Action {
+    LEFT, RIGHT, DOWN, ROTATE, DROP;
+
+    private static final Action[] VALUES = values();
+
+    public int bit() { return 1 << ordinal(); }
+
+    public static Action of(int ordinal) { return VALUES[ordinal]; }
+}
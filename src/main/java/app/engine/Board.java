@@ -0,0 +1,201 @@
+package app.engine;
+
+import java.util.Arrays;
+
+/**
+ * Playfield as one occupancy mask per row (bit c set = column c filled) plus a colour
+ * plane that only the renderer and snapshot code read. All rule checks go through the
+ * masks. A Zobrist hash of the occupancy is kept up to date by place() and clearRows()
+ * so caches can key on board contents without rescanning them.
+ */
+public final class Board {
+    public static final int MAX_COLS = 31;
+    public static final int MAX_ROWS = 64;
+
+    // one random key per cell, fixed so hashes are comparable across boards and runs
+    private static final long[] ZOBRIST = zobristKeys();
+
+    private final int cols, rows, full;
+    private final int[] masks;
+    private final byte[][] colors;
+    private long hash;
+
+    public Board(int cols, int rows) {
+        if (cols < 4 || cols > MAX_COLS) throw new IllegalArgumentException("cols out of range: " + cols);
+        if (rows < 4 || rows > MAX_ROWS) throw new IllegalArgumentException("rows out of range: " + rows);
+        this.cols = cols;
+        this.rows = rows;
+        this.full = (1 << cols) - 1;
+        this.masks = new int[rows];
+        this.colors = new byte[rows][cols];
+    }
+
+    public int cols() { return cols; }
+    public int rows() { return rows; }
+    public int fullMask() { return full; }
+    public int row(int r) { return masks[r]; }
+    public boolean filled(int r, int c) { return (masks[r] >>> c & 1) != 0; }
+    public int color(int r, int c) { return colors[r][c]; }
+    /** Zobrist hash of the filled cells; equal boards hash equal whatever their colours. */
+    public long hash() { return hash; }
+
+    public int[] copyMasks(int[] dst) {
+        System.arraycopy(masks, 0, dst, 0, rows);
+        return dst;
+    }
+
+    public void clear() {
+        Arrays.fill(masks, 0);
+        hash = 0;
+        for (byte[] row : colors) Arrays.fill(row, (byte) 0);
+    }
+
+    /** Row mask of a 4-wide piece row moved to {@code col}, or -1 if any cell would leave the walls. */
+    public int shift(int pieceRow, int col) {
+        return shift(pieceRow, col, full);
+    }
+
+    public static int shift(int pieceRow, int col, int full) {
+        if (col >= 0) {
+            long s = (long) pieceRow << col;
+            return (s & ~(long) full) != 0 ? -1 : (int) s;
+        }
+        if (col <= -4 || (pieceRow & ((1 << -col) - 1)) != 0) return -1;
+        return pieceRow >>> -col;
+    }
+
+    public boolean fits(int[] piece, int row, int col) {
+        return fits(masks, rows, full, piece, row, col);
+    }
+
+    /** Collision test against any mask array laid out like {@link Board}'s rows. */
+    public static boolean fits(int[] masks, int rows, int full, int[] piece, int row, int col) {
+        for (int r = 0; r < 4; r++) {
+            int m = piece[r];
+            if (m == 0) continue;
+            int s = shift(m, col, full);
+            if (s < 0) return false;
+            int rr = row + r;
+            if (rr >= rows) return false;
+            if (rr >= 0 && (masks[rr] & s) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the piece into the masks and colour plane.
+     * @return true if part of the piece was above the top row
+     */
+    public boolean place(int[] piece, int row, int col, int id) {
+        boolean aboveTop = false;
+        for (int r = 0; r < 4; r++) {
+            int m = piece[r];
+            if (m == 0) continue;
+            int rr = row + r;
+            if (rr < 0) { aboveTop = true; continue; }
+            if (rr >= rows) continue;
+            int s = col >= 0 ? (int) (((long) m << col) & full) : (m >>> -col) & full;
+            hash ^= rowHash(rr, s & ~masks[rr]);
+            masks[rr] |= s;
+            byte[] cr = colors[rr];
+            for (int bits = s; bits != 0; bits &= bits - 1) cr[Integer.numberOfTrailingZeros(bits)] = (byte) id;
+        }
+        return aboveTop;
+    }
+
+    /** Bit r set for every full row r. */
+    public long fullRows() {
+        long out = 0;
+        for (int r = 0; r < rows; r++) if (masks[r] == full) out |= 1L << r;
+        return out;
+    }
+
+    /** Removes the rows flagged in {@code rowMask} and drops everything above them. */
+    public void clearRows(long rowMask) {
+        int write = rows - 1;
+        for (int r = rows - 1; r >= 0; r--) {
+            if ((rowMask >>> r & 1) != 0) {
+                hash ^= rowHash(r, masks[r]);
+                continue;
+            }
+            if (write != r) {
+                hash ^= rowHash(r, masks[r]) ^ rowHash(write, masks[r]);
+                masks[write] = masks[r];
+                System.arraycopy(colors[r], 0, colors[write], 0, cols);
+            }
+            write--;
+        }
+        for (; write >= 0; write--) {
+            masks[write] = 0;
+            Arrays.fill(colors[write], (byte) 0);
+        }
+    }
+
+    // checkpoints: each row's mask, then the colour of every filled cell, two per byte
+
+    void write(VarBytes.Out out) {
+        for (int r = 0; r < rows; r++) out.varint(masks[r]);
+        int half = -1;
+        for (int r = 0; r < rows; r++) {
+            for (int bits = masks[r]; bits != 0; bits &= bits - 1) {
+                int c = colors[r][Integer.numberOfTrailingZeros(bits)] & 0xF;
+                if (half < 0) {
+                    half = c;
+                } else {
+                    out.u8(half | c << 4);
+                    half = -1;
+                }
+            }
+        }
+        if (half >= 0) out.u8(half);
+    }
+
+    void read(VarBytes.In in) throws java.io.IOException {
+        clear();
+        for (int r = 0; r < rows; r++) masks[r] = (int) in.varint() & full;
+        int pending = -1;
+        for (int r = 0; r < rows; r++) {
+            for (int bits = masks[r]; bits != 0; bits &= bits - 1) {
+                int c;
+                if (pending < 0) {
+                    int b = in.u8();
+                    c = b & 0xF;
+                    pending = b >>> 4;
+                } else {
+                    c = pending;
+                    pending = -1;
+                }
+                colors[r][Integer.numberOfTrailingZeros(bits)] = (byte) c;
+            }
+        }
+        hash = hash(masks, rows);
+    }
+
+    /** XOR of the cell keys for the bits of {@code mask} in row {@code r}. */
+    public static long rowHash(int r, int mask) {
+        long h = 0;
+        int base = r * MAX_COLS;
+        for (int bits = mask; bits != 0; bits &= bits - 1) h ^= ZOBRIST[base + Integer.numberOfTrailingZeros(bits)];
+        return h;
+    }
+
+    /** Same hash as {@link #hash()} for a bare mask array. */
+    public static long hash(int[] masks, int rows) {
+        long h = 0;
+        for (int r = 0; r < rows; r++) if (masks[r] != 0) h ^= rowHash(r, masks[r]);
+        return h;
+    }
+
+    private static long[] zobristKeys() {
+        long[] keys = new long[MAX_ROWS * MAX_COLS];
+        long z = 0x5DEECE66DL;
+        for (int i = 0; i < keys.length; i++) {
+            z += 0x9E3779B97F4A7C15L;
+            long x = z;
+            x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+            x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+            keys[i] = x ^ (x >>> 31);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,7 @@
+package app.engine;
+
+public interface Clock {
+    long millis();
+
+    static Clock system() { return System::currentTimeMillis; }
+}
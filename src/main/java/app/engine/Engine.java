@@ -0,0 +1,403 @@
+package app.engine;
+
+import java.util.Objects;
+
+/**
+ * Game rules for one or more boards sharing a piece queue. No rendering and no
+ * toolkit timers: time comes from the injected {@link Clock}, and every timed event
+ * (gravity, lock delay, line-clear flash) fires at its own deadline, so the outcome
+ * depends only on when inputs arrive, not on how often {@link #step} is called.
+ */
+public final class Engine {
+    public static final int LOCK_DELAY_MS = 500;
+    public static final int CLEAR_FLASH_MS = 350;
+
+    public interface Listener {
+        default void onGravity(PlayerState p) {}
+        default void onSpawn(PlayerState p) {}
+        default void onGameOver(PlayerState p) {}
+        /** An input is about to be applied to a live, non-clearing board; see {@link #playTime()}. */
+        default void onInput(PlayerState p, Action a) {}
+    }
+
+    private static final Action[] ACTIONS = Action.values();
+    private static final Listener NONE = new Listener() {};
+
+    private final Clock clock;
+    private final int cols, rows, startLevel;
+    private final PlayerState[] players;
+    private final PieceQueue queue;
+    private Listener listener = NONE;
+
+    private final Timers timers;
+    private long time;
+    private int alive = 0;
+    private boolean paused = false;
+    private long pausedAt;
+    private long startedAt, pausedTotal;
+
+    public Engine(Clock clock, int cols, int rows, int playerCount, int startLevel, long seed) {
+        this.clock = Objects.requireNonNull(clock);
+        this.cols = cols;
+        this.rows = rows;
+        this.startLevel = startLevel;
+        this.queue = new PieceQueue(seed, playerCount);
+        this.timers = new Timers(playerCount);
+        this.players = new PlayerState[playerCount];
+        for (int i = 0; i < playerCount; i++) players[i] = new PlayerState(this, i, cols, rows);
+    }
+
+    public void setListener(Listener l) { listener = l == null ? NONE : l; }
+
+    public int cols() { return cols; }
+    public int rows() { return rows; }
+    public int playerCount() { return players.length; }
+    public PlayerState player(int i) { return players[i]; }
+    public long time() { return time; }
+    /** Milliseconds of play since start(), pauses excluded; what replays are timed by. */
+    public long playTime() { return time - startedAt - pausedTotal; }
+    public PieceQueue queue() { return queue; }
+    public boolean isPaused() { return paused; }
+
+    public boolean isOver() { return alive == 0; }
+
+    /** Time of the next pending timer, or Long.MAX_VALUE; headless drivers can jump straight to it. */
+    public long nextDeadline() { return timers.nextDeadline(); }
+
+    public void start() {
+        queue.reset();
+        timers.clear();
+        paused = false;
+        time = clock.millis();
+        startedAt = time;
+        pausedTotal = 0;
+        alive = players.length;
+        for (PlayerState p : players) reset(p);
+        for (PlayerState p : players) spawn(p);
+        for (PlayerState p : players) if (!p.dead) scheduleGravity(p);
+    }
+
+    /**
+     * Fires every timer that is due by the clock's current time, then applies one
+     * input bitmask (see {@link Action#bit()}) per player.
+     * @return true if any board changed
+     */
+    public boolean step(int... inputs) {
+        if (paused) return false;
+        boolean changed = advanceTo(clock.millis());
+        for (int i = 0; i < inputs.length && i < players.length; i++) {
+            int mask = inputs[i];
+            if (mask == 0) continue;
+            for (Action a : ACTIONS) if ((mask & a.bit()) != 0) act(players[i], a);
+            changed = true;
+        }
+        return changed;
+    }
+
+    public void apply(int player, Action a) {
+        if (paused) return;
+        advanceTo(clock.millis());
+        act(players[player], a);
+    }
+
+    public void setPaused(boolean v) {
+        if (v == paused) return;
+        long now = clock.millis();
+        if (v) {
+            advanceTo(now);
+            pausedAt = now;
+        } else {
+            timers.shift(now - pausedAt);
+            pausedTotal += now - pausedAt;
+            time = now;
+        }
+        paused = v;
+    }
+
+    public Tetromino peekNext(PlayerState p) {
+        return queue.peekNext(p.index);
+    }
+
+    public Tetromino peekNext(PlayerState p, int ahead) {
+        return queue.peekNext(p.index, ahead);
+    }
+
+    public static int gravMs(int lvl) {
+        int base = 700;
+        int ms = base - (lvl - 1) * 60;
+        return Math.max(100, ms);
+    }
+
+    /** Column a new piece's 4x4 box starts in. */
+    static int spawnCol(int cols) { return Math.max(0, (cols / 2) - 2); }
+
+    public static int scoreForLines(int n) {
+        return switch (n) {
+            case 1 -> 100;
+            case 2 -> 300;
+            case 3 -> 600;
+            case 4 -> 1000;
+            default -> 0;
+        };
+    }
+
+    // checkpoints
+
+    /**
+     * Everything the rules depend on, written compactly: play time, queue cursors,
+     * timers relative to now, and per board the counters, the falling piece and the
+     * cells. Colours ride along so a restored board renders the same.
+     */
+    void writeState(VarBytes.Out out) {
+        out.varint(playTime());
+        out.varint(alive);
+        for (PlayerState p : players) {
+            out.varint(queue.cursor(p.index));
+            out.u8(queue.isActive(p.index) ? 1 : 0);
+        }
+        for (int slot = 0; slot < players.length * Timers.KINDS; slot++) {
+            out.varint(timers.isScheduled(slot) ? 1 + (timers.deadline(slot) - time) : 0);
+        }
+        for (PlayerState p : players) {
+            out.varint(p.score);
+            out.varint(p.lines);
+            out.varint(p.level);
+            out.varint(p.initLevel);
+            out.u8((p.dead ? 1 : 0) | (p.clearing ? 2 : 0));
+            out.varint(p.clearingRows);
+            out.u8(p.piece == null ? 0 : p.piece.id());
+            out.zigzag(p.row);
+            out.zigzag(p.col);
+            out.u8(p.rot);
+            p.board.write(out);
+        }
+    }
+
+    /** Puts the engine back into a state written by {@link #writeState}; the clock must read its play time. */
+    void readState(VarBytes.In in) throws java.io.IOException {
+        long playTime = in.varint();
+        time = startedAt + pausedTotal + playTime;
+        paused = false;
+        alive = (int) in.varint();
+        long[] cursors = new long[players.length];
+        boolean[] live = new boolean[players.length];
+        for (int i = 0; i < players.length; i++) {
+            cursors[i] = in.varint();
+            live[i] = in.u8() != 0;
+        }
+        queue.restore(cursors, live);
+        timers.clear();
+        for (int slot = 0; slot < players.length * Timers.KINDS; slot++) {
+            long d = in.varint();
+            if (d > 0) timers.schedule(slot, time + d - 1);
+        }
+        Tetromino[] byId = Tetromino.values();
+        for (PlayerState p : players) {
+            p.score = (int) in.varint();
+            p.lines = (int) in.varint();
+            p.level = (int) in.varint();
+            p.initLevel = (int) in.varint();
+            int flags = in.u8();
+            p.dead = (flags & 1) != 0;
+            p.clearing = (flags & 2) != 0;
+            p.clearingRows = in.varint();
+            int id = in.u8();
+            p.piece = id == 0 ? null : byId[id];
+            p.row = (int) in.zigzag();
+            p.col = (int) in.zigzag();
+            p.rot = in.u8() & 3;
+            p.board.read(in);
+            p.dirtyRows = -1L;
+        }
+    }
+
+    // timers
+
+    private boolean advanceTo(long now) {
+        boolean fired = false;
+        while (alive > 0) {
+            long due = timers.nextDeadline();
+            int slot = timers.pollDue(now);
+            if (slot < 0) break;
+            time = due;
+            fired = true;
+            PlayerState p = players[Timers.player(slot)];
+            switch (Timers.kind(slot)) {
+                case Timers.GRAVITY -> {
+                    scheduleGravity(p);
+                    tick(p);
+                    listener.onGravity(p);
+                }
+                case Timers.LOCK -> lockNowOrClear(p);
+                case Timers.CLEAR -> finishClear(p);
+            }
+        }
+        time = Math.max(time, now);
+        return fired;
+    }
+
+    // each board falls at its own level's pace
+    private void scheduleGravity(PlayerState p) {
+        timers.schedule(Timers.slot(p.index, Timers.GRAVITY), time + gravMs(p.level));
+    }
+
+    private int lockSlot(PlayerState p) { return Timers.slot(p.index, Timers.LOCK); }
+
+    // rules
+
+    private void reset(PlayerState p) {
+        p.dead = false;
+        p.clearing = false;
+        p.clearingRows = 0;
+        p.board.clear();
+        p.dirtyRows = -1L;
+        p.score = 0;
+        p.lines = 0;
+        p.initLevel = startLevel;
+        p.level = p.initLevel;
+    }
+
+    private void spawn(PlayerState p) {
+        p.piece = queue.next(p.index);
+        p.rot = 0;
+        p.row = 0;
+        p.col = spawnCol(cols);
+        markPiece(p);
+        if (!canPlace(p, p.row, p.col, p.rot)) {
+            gameOver(p);
+        }
+        listener.onSpawn(p);
+    }
+
+    private void tick(PlayerState p) {
+        if (p.clearing || p.dead) return;
+        if (canPlace(p, p.row + 1, p.col, p.rot)) {
+            markPiece(p);
+            p.row++;
+            markPiece(p);
+        } else {
+            startLock(p);
+        }
+    }
+
+    private void act(PlayerState p, Action a) {
+        if (p.dead || p.clearing) return;
+        listener.onInput(p, a);
+        markPiece(p);
+        switch (a) {
+            case LEFT   -> tryMove(p, 0, -1);
+            case RIGHT  -> tryMove(p, 0, 1);
+            case DOWN   -> softDropOne(p);
+            case ROTATE -> tryRotate(p);
+            case DROP   -> hardDropNow(p);
+        }
+        markPiece(p);
+    }
+
+    // dirty-row bookkeeping for renderers: the active piece's footprint before and
+    // after every change, plus whole bands when rows flash or shift
+    private void markPiece(PlayerState p) {
+        if (p.piece == null) return;
+        PieceGeometry g = p.piece.geometry(p.rot);
+        markRows(p, p.row + g.minRow(), p.row + g.maxRow());
+    }
+
+    private void markRows(PlayerState p, int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(rows - 1, to);
+        if (from > to) return;
+        p.dirtyRows |= (-1L >>> (64 - (to - from + 1))) << from;
+    }
+
+    private void lockNowOrClear(PlayerState p) {
+        markPiece(p); // its final footprint, whichever path led here; spawn replaces the piece
+        boolean aboveTop = lockAndCheckAboveTop(p);
+        if (aboveTop) {
+            gameOver(p);
+            return;
+        }
+
+        long full = p.board.fullRows();
+        if (full != 0) {
+            p.clearing = true;
+            p.clearingRows = full;
+            p.dirtyRows |= full;
+            timers.schedule(Timers.slot(p.index, Timers.CLEAR), time + CLEAR_FLASH_MS);
+        } else {
+            spawn(p);
+        }
+    }
+
+    private boolean lockAndCheckAboveTop(PlayerState p) {
+        return p.board.place(p.piece.rowMasks(p.rot), p.row, p.col, p.piece.id());
+    }
+
+    private void finishClear(PlayerState p) {
+        long cleared = p.clearingRows;
+        int n = Long.bitCount(cleared);
+        p.board.clearRows(cleared);
+        markRows(p, 0, 63 - Long.numberOfLeadingZeros(cleared));
+        p.clearing = false;
+        p.clearingRows = 0;
+        p.score += scoreForLines(n);
+        p.lines += n;
+        int target = p.initLevel + (p.lines / 10);
+        if (target > p.level) {
+            p.level = target;
+            scheduleGravity(p); // speeds up
+        }
+        spawn(p);
+    }
+
+    private void gameOver(PlayerState p) {
+        p.dead = true;
+        markPiece(p);
+        alive--;
+        queue.release(p.index);
+        timers.cancel(Timers.slot(p.index, Timers.GRAVITY));
+        timers.cancel(lockSlot(p));
+        timers.cancel(Timers.slot(p.index, Timers.CLEAR));
+        listener.onGameOver(p);
+    }
+
+    boolean canPlace(PlayerState p, int r0, int c0, int rot) {
+        return p.board.fits(p.piece.rowMasks(rot), r0, c0);
+    }
+
+    // movement helpers
+    private boolean tryMove(PlayerState p, int dr, int dc) {
+        int nr = p.row + dr, nc = p.col + dc;
+        if (canPlace(p, nr, nc, p.rot)) {
+            p.row = nr; p.col = nc;
+            if (timers.isScheduled(lockSlot(p)) && canPlace(p, p.row + 1, p.col, p.rot)) timers.cancel(lockSlot(p));
+            return true;
+        }
+        return false;
+    }
+    private boolean tryRotate(PlayerState p) {
+        int nr = (p.rot + 1) % 4;
+        if (canPlace(p, p.row, p.col, nr)) {
+            p.rot = nr;
+            if (timers.isScheduled(lockSlot(p)) && canPlace(p, p.row + 1, p.col, p.rot)) timers.cancel(lockSlot(p));
+            return true;
+        }
+        return false;
+    }
+    private void softDropOne(PlayerState p) {
+        if (canPlace(p, p.row + 1, p.col, p.rot)) p.row++; else startLock(p);
+    }
+    private void hardDropNow(PlayerState p) {
+        timers.cancel(lockSlot(p));
+
+        int dist = 0;
+        while (canPlace(p, p.row + 1, p.col, p.rot)) { p.row++; dist++; }
+        if (dist > 0) p.score += dist * 2;
+
+        lockNowOrClear(p);
+    }
+
+    private void startLock(PlayerState p) {
+        if (timers.isScheduled(lockSlot(p))) return;
+        timers.schedule(lockSlot(p), time + LOCK_DELAY_MS);
+    }
+}
@@ -0,0 +1,14 @@
+package app.engine;
+
+// Clock for headless runs: time only moves when told to.
+public final class ManualClock implements Clock {
+    private long now;
+
+    public ManualClock() { this(0); }
+    public ManualClock(long start) { this.now = start; }
+
+    @Override public long millis() { return now; }
+
+    public void set(long t) { now = t; }
+    public void advance(long ms) { now += ms; }
+}
@@ -0,0 +1,285 @@
+package app.engine;
+
+import java.util.Arrays;
+
+/**
+ * Every lock position a piece can reach from a given state under the engine's move
+ * rules (shift, soft drop, clockwise rotation in place, hard drop), found by a
+ * breadth-first search over (rotation, row, column). Collision is a bit test: for each
+ * (rotation, column) the rows where the piece fits are built once per search as one
+ * long, which also gives a hard drop's landing row in a single bit scan.
+ * Positions are distinct by the cells they fill, so rotations of O, I, S and Z that
+ * cover the same cells count once, and each comes with its shortest input sequence.
+ * All buffers are sized once per board size and reused; a search doesn't allocate.
+ */
+public final class MoveGenerator {
+    private static final int PAD = 4; // rows and columns a piece box can hang off the top/left
+    /** Tallest board the row bitmasks cover. */
+    public static final int MAX_ROWS = 64 - PAD;
+    private static final Action[] MOVES = {Action.LEFT, Action.RIGHT, Action.DOWN, Action.ROTATE};
+
+    private final int cols, rows, full, rowSpan, colSpan, states;
+
+    // per search state, valid when stamp matches the current search
+    private final int[] seen, parent;
+    private final byte[] via;
+    private final int[] queue;
+    // per (rotation, column): bit row+PAD set where the piece fits
+    private final int[] fitSeen;
+    private final long[] fitRows;
+
+    // lock positions keyed by (shape class, top row of cells, left column of cells)
+    private final int[] lockSeen, lockIndex;
+    private final int[] lockRot, lockRow, lockCol, lockFrom, lockLen;
+    private int stamp = 0, count, visited;
+
+    private int[] masks;
+    private final int[] own;
+    private final PieceGeometry[] geo = new PieceGeometry[4];
+    private final int[] shapeClass = new int[4];
+
+    public MoveGenerator(int cols, int rows) {
+        if (rows > MAX_ROWS) throw new IllegalArgumentException("rows out of range: " + rows);
+        this.cols = cols;
+        this.rows = rows;
+        this.full = (1 << cols) - 1;
+        this.rowSpan = rows + PAD;
+        this.colSpan = cols + PAD;
+        this.states = 4 * rowSpan * colSpan;
+        seen = new int[states];
+        parent = new int[states];
+        via = new byte[states];
+        queue = new int[states];
+        fitSeen = new int[4 * colSpan];
+        fitRows = new long[4 * colSpan];
+        lockSeen = new int[states];
+        lockIndex = new int[states];
+        lockRot = new int[states];
+        lockRow = new int[states];
+        lockCol = new int[states];
+        lockFrom = new int[states];
+        lockLen = new int[states];
+        own = new int[rows];
+    }
+
+    public int cols() { return cols; }
+    public int rows() { return rows; }
+
+    /** Searches from the player's falling piece on a copy of its board. */
+    public int generate(Player p) {
+        for (int r = 0; r < 4; r++) geo[r] = p.pieceGeometry(r);
+        return generate(p.board().copyMasks(own), geo, p.pieceRow(), p.pieceCol(), p.pieceRot());
+    }
+
+    /** Searches from a freshly spawned {@code t}, as the engine would place it. */
+    public int generateFromSpawn(int[] masks, Tetromino t) {
+        for (int r = 0; r < 4; r++) geo[r] = t.geometry(r);
+        return generate(masks, geo, 0, Engine.spawnCol(cols), 0);
+    }
+
+    /**
+     * Runs the search over {@code masks} (one int per row, not copied) for a piece with
+     * geometry {@code g[rot]}, starting at (row, col, rot).
+     * @return number of distinct lock positions; 0 if the start state itself collides
+     */
+    public int generate(int[] masks, PieceGeometry[] g, int row, int col, int rot) {
+        this.masks = masks;
+        if (g != geo) System.arraycopy(g, 0, geo, 0, 4);
+        classify();
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(lockSeen, 0);
+            Arrays.fill(fitSeen, 0);
+            stamp = 1;
+        }
+        count = 0;
+        visited = 0;
+        if (!fits(rot, row, col)) return 0;
+
+        int head = 0, tail = 0;
+        int start = state(rot, row, col);
+        seen[start] = stamp;
+        parent[start] = -1;
+        queue[tail++] = start;
+        while (head < tail) {
+            int s = queue[head++];
+            visited++;
+            int sr = rotOf(s), srow = rowOf(s), scol = colOf(s);
+
+            // hard drop ends the piece wherever a straight fall from here lands
+            long free = fitRows(sr, scol) >>> (srow + PAD);
+            addLock(sr, srow + Long.numberOfTrailingZeros(~free) - 1, scol, s);
+
+            for (Action a : MOVES) {
+                int nr = sr, nrow = srow, ncol = scol;
+                switch (a) {
+                    case LEFT -> ncol--;
+                    case RIGHT -> ncol++;
+                    case DOWN -> nrow++;
+                    case ROTATE -> nr = (sr + 1) & 3;
+                    default -> {}
+                }
+                if (ncol < -PAD || ncol >= cols || !fits(nr, nrow, ncol)) continue;
+                int n = state(nr, nrow, ncol);
+                if (seen[n] == stamp) continue;
+                seen[n] = stamp;
+                parent[n] = s;
+                via[n] = (byte) a.ordinal();
+                queue[tail++] = n;
+            }
+        }
+        return count;
+    }
+
+    /** Lock positions found by the last search. */
+    public int count() { return count; }
+    /** Piece states the last search expanded. */
+    public int visited() { return visited; }
+
+    /** Geometry of the piece searched last, in rotation {@code rot}. */
+    public PieceGeometry geometry(int rot) { return geo[rot]; }
+    public int rot(int i) { return lockRot[i]; }
+    public int row(int i) { return lockRow[i]; }
+    public int col(int i) { return lockCol[i]; }
+    /** Inputs on the shortest path to lock position {@code i}, the final hard drop included. */
+    public int pathLength(int i) { return lockLen[i]; }
+
+    /**
+     * Writes the inputs that take the start state to lock position {@code i} into
+     * {@code out} (at least {@link #pathLength(int)} long), ending with DROP.
+     * @return the number of inputs written
+     */
+    public int path(int i, Action[] out) {
+        int len = lockLen[i];
+        out[len - 1] = Action.DROP;
+        int k = len - 2;
+        for (int s = lockFrom[i]; parent[s] >= 0; s = parent[s]) out[k--] = Action.of(via[s]);
+        return len;
+    }
+
+    /** First input on the shortest path to lock position {@code i}. */
+    public Action firstMove(int i) {
+        int s = lockFrom[i];
+        if (parent[s] < 0) return Action.DROP;
+        while (parent[parent[s]] >= 0) s = parent[s];
+        return Action.of(via[s]);
+    }
+
+    /** Index of the lock position filling the same cells as (rot, row, col), or -1. */
+    public int find(int rot, int row, int col) {
+        int key = lockKey(rot, row, col);
+        return key >= 0 && lockSeen[key] == stamp ? lockIndex[key] : -1;
+    }
+
+    /**
+     * Counts the piece sequences placeable on {@code masks}: every lock position of
+     * {@code seq[0]}, then for each resulting board every lock position of
+     * {@code seq[1]}, and so on for {@code depth} pieces, clearing full rows in between.
+     */
+    public static long perft(int[] masks, int cols, int rows, Tetromino[] seq, int depth) {
+        MoveGenerator[] gens = new MoveGenerator[depth];
+        int[][] boards = new int[depth][rows];
+        for (int d = 0; d < depth; d++) gens[d] = new MoveGenerator(cols, rows);
+        return perft(masks, seq, depth, 0, gens, boards);
+    }
+
+    private static long perft(int[] masks, Tetromino[] seq, int depth, int d,
+                              MoveGenerator[] gens, int[][] boards) {
+        if (d == depth) return 1;
+        MoveGenerator g = gens[d];
+        int n = g.generateFromSpawn(masks, seq[d % seq.length]);
+        if (d == depth - 1) return n;
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            int[] next = boards[d];
+            System.arraycopy(masks, 0, next, 0, g.rows);
+            lockInto(next, g.rows, g.full, g.geo[g.rot(i)].rowMasks(), g.row(i), g.col(i));
+            total += perft(next, seq, depth, d + 1, gens, boards);
+        }
+        return total;
+    }
+
+    // places the piece and drops the rows it completes
+    private static void lockInto(int[] b, int rows, int full, int[] piece, int row, int col) {
+        for (int r = 0; r < 4; r++) {
+            int rr = row + r;
+            if (piece[r] == 0 || rr < 0 || rr >= rows) continue;
+            b[rr] |= Board.shift(piece[r], col, full);
+        }
+        int write = rows - 1;
+        for (int r = rows - 1; r >= 0; r--) {
+            if (b[r] == full) continue;
+            b[write--] = b[r];
+        }
+        for (; write >= 0; write--) b[write] = 0;
+    }
+
+    private void addLock(int rot, int row, int col, int from) {
+        int key = lockKey(rot, row, col);
+        if (lockSeen[key] == stamp) return; // BFS order: the first path found is shortest
+        lockSeen[key] = stamp;
+        int i = count++;
+        lockIndex[key] = i;
+        lockRot[i] = rot;
+        lockRow[i] = row;
+        lockCol[i] = col;
+        lockFrom[i] = from;
+        int len = 1;
+        for (int s = from; parent[s] >= 0; s = parent[s]) len++;
+        lockLen[i] = len;
+    }
+
+    // rotations covering the same cells share a class, keyed by their top-left cell
+    private int lockKey(int rot, int row, int col) {
+        PieceGeometry g = geo[rot];
+        int top = row + g.minRow() + PAD, left = col + g.minCol();
+        if (top < 0 || top >= rowSpan || left < 0 || left >= cols) return -1;
+        return (shapeClass[rot] * rowSpan + top) * colSpan + left;
+    }
+
+    private void classify() {
+        for (int r = 0; r < 4; r++) {
+            shapeClass[r] = r;
+            for (int k = 0; k < r; k++) {
+                if (sameCells(geo[k], geo[r])) { shapeClass[r] = shapeClass[k]; break; }
+            }
+        }
+    }
+
+    private static boolean sameCells(PieceGeometry a, PieceGeometry b) {
+        if (a.maxRow() - a.minRow() != b.maxRow() - b.minRow()) return false;
+        int[] ma = a.rowMasks(), mb = b.rowMasks();
+        for (int r = 0; r <= a.maxRow() - a.minRow(); r++) {
+            if (ma[a.minRow() + r] >>> a.minCol() != mb[b.minRow() + r] >>> b.minCol()) return false;
+        }
+        return true;
+    }
+
+    private boolean fits(int rot, int row, int col) {
+        return row >= -PAD && row < rows && (fitRows(rot, col) >>> (row + PAD) & 1) != 0;
+    }
+
+    private long fitRows(int rot, int col) {
+        int i = rot * colSpan + col + PAD;
+        if (fitSeen[i] == stamp) return fitRows[i];
+        fitSeen[i] = stamp;
+        int[] pm = geo[rot].rowMasks();
+        long blocked = 0;
+        for (int r = 0; r < 4; r++) {
+            if (pm[r] == 0) continue;
+            int s = Board.shift(pm[r], col, full);
+            if (s < 0) return fitRows[i] = 0;
+            // piece row r sits on board row row + r: bottom wall, then filled cells
+            if (rows - r + PAD < 64) blocked |= -1L << (rows - r + PAD);
+            for (int rr = 0; rr < rows; rr++) {
+                if ((masks[rr] & s) != 0 && rr - r + PAD >= 0) blocked |= 1L << (rr - r + PAD);
+            }
+        }
+        return fitRows[i] = ~blocked;
+    }
+
+    private int state(int rot, int row, int col) { return (rot * rowSpan + row + PAD) * colSpan + col + PAD; }
+    private int rotOf(int s) { return s / (rowSpan * colSpan); }
+    private int rowOf(int s) { return s / colSpan % rowSpan - PAD; }
+    private int colOf(int s) { return s % colSpan - PAD; }
+}
@@ -0,0 +1,84 @@
+package app.engine;
+
+/**
+ * Everything the engine, renderer and AI ask about a piece in one rotation, computed
+ * once at class load. Arrays handed out are shared and must not be modified.
+ * Offsets are relative to the piece's 4x4 box; for an empty column the bottom and
+ * top profiles hold -1.
+ */
+public final class PieceGeometry {
+    private static final PieceGeometry[][] ATLAS = build();
+
+    public static PieceGeometry of(Tetromino t, int rot) { return ATLAS[t.ordinal()][rot & 3]; }
+
+    private final int[][] shape;
+    private final int[] rowMasks;
+    private final int[] cellRows, cellCols;
+    private final int[] bottom, top;
+    private final int minRow, maxRow, minCol, maxCol;
+
+    private PieceGeometry(int[][] shape) {
+        this.shape = shape;
+        this.rowMasks = new int[4];
+        this.bottom = new int[]{-1, -1, -1, -1};
+        this.top = new int[]{-1, -1, -1, -1};
+        int n = 0;
+        for (int r = 0; r < 4; r++) for (int c = 0; c < 4; c++) if (shape[r][c] != 0) n++;
+        this.cellRows = new int[n];
+        this.cellCols = new int[n];
+        int i = 0, r0 = 4, r1 = -1, c0 = 4, c1 = -1;
+        for (int r = 0; r < 4; r++) for (int c = 0; c < 4; c++) {
+            if (shape[r][c] == 0) continue;
+            rowMasks[r] |= 1 << c;
+            cellRows[i] = r;
+            cellCols[i] = c;
+            i++;
+            if (top[c] < 0) top[c] = r;
+            bottom[c] = r;
+            r0 = Math.min(r0, r); r1 = Math.max(r1, r);
+            c0 = Math.min(c0, c); c1 = Math.max(c1, c);
+        }
+        this.minRow = n == 0 ? 0 : r0;
+        this.maxRow = r1;
+        this.minCol = n == 0 ? 0 : c0;
+        this.maxCol = c1;
+    }
+
+    /** 4x4 cell matrix, 1 where the piece has a block. */
+    public int[][] shape() { return shape; }
+    /** One bit per column (bit 0 = leftmost) for each of the 4 box rows. */
+    public int[] rowMasks() { return rowMasks; }
+    public int cellCount() { return cellRows.length; }
+    public int[] cellRows() { return cellRows; }
+    public int[] cellCols() { return cellCols; }
+    /** Lowest occupied box row per box column. */
+    public int[] bottom() { return bottom; }
+    /** Highest occupied box row per box column. */
+    public int[] top() { return top; }
+    public int minRow() { return minRow; }
+    public int maxRow() { return maxRow; }
+    /** Left extent: the piece can move to board column {@code -minCol()} at most. */
+    public int minCol() { return minCol; }
+    /** Right extent: the piece can move to board column {@code cols - 1 - maxCol()} at most. */
+    public int maxCol() { return maxCol; }
+    public int width() { return maxCol - minCol + 1; }
+
+    private static PieceGeometry[][] build() {
+        Tetromino[] all = Tetromino.values();
+        PieceGeometry[][] out = new PieceGeometry[all.length][4];
+        for (Tetromino t : all) {
+            int[][] m = t.base();
+            for (int rot = 0; rot < 4; rot++) {
+                out[t.ordinal()][rot] = new PieceGeometry(m);
+                m = rotCW(m);
+            }
+        }
+        return out;
+    }
+
+    private static int[][] rotCW(int[][] m) {
+        int[][] r = new int[4][4];
+        for (int i = 0; i < 4; i++) for (int j = 0; j < 4; j++) r[j][3 - i] = m[i][j];
+        return r;
+    }
+}
@@ -0,0 +1,134 @@
+package app.engine;
+
+/**
+ * The shared 7-bag piece sequence, read through one cursor per player and stored in a
+ * fixed ring. Bag k is a pure function of (seed, k), so a slot is reused as soon as
+ * every active cursor has passed it. A cursor that runs more than a ring's length
+ * ahead of the slowest one regenerates its bag on the fly instead of growing memory.
+ */
+public final class PieceQueue {
+    public static final int BAG = 7;
+    public static final int DEFAULT_CAPACITY = 8 * BAG;
+
+    private static final Tetromino[] PIECES = {
+            Tetromino.I, Tetromino.O, Tetromino.T, Tetromino.S, Tetromino.Z, Tetromino.J, Tetromino.L
+    };
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final Tetromino[] ring;
+    private final long[] cursors;
+    private final boolean[] active;
+    private long written = 0;
+
+    private final Tetromino[] scratch = new Tetromino[BAG];
+    private long scratchBag = -1;
+
+    public PieceQueue(long seed, int players) { this(seed, players, DEFAULT_CAPACITY); }
+
+    public PieceQueue(long seed, int players, int capacity) {
+        int bags = Math.max(2, (capacity + BAG - 1) / BAG);
+        this.seed = seed;
+        this.ring = new Tetromino[bags * BAG];
+        this.cursors = new long[players];
+        this.active = new boolean[players];
+        reset();
+    }
+
+    public long seed() { return seed; }
+    public int capacity() { return ring.length; }
+    public long cursor(int player) { return cursors[player]; }
+
+    public void reset() {
+        written = 0;
+        scratchBag = -1;
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = 0;
+            active[i] = true;
+        }
+    }
+
+    /** Moves a player's cursor to an absolute position, e.g. when restoring saved state. */
+    public void seek(int player, long pos) {
+        cursors[player] = pos;
+        active[player] = true;
+    }
+
+    /**
+     * Puts every cursor back where a checkpoint had it. The ring refills from the
+     * slowest cursor on, since any bag can be rebuilt from the seed.
+     */
+    void restore(long[] pos, boolean[] live) {
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = pos[i];
+            active[i] = live[i];
+        }
+        long floor = Long.MAX_VALUE;
+        for (int i = 0; i < cursors.length; i++) if (active[i]) floor = Math.min(floor, cursors[i]);
+        if (floor == Long.MAX_VALUE) floor = 0;
+        written = floor - floor % BAG;
+        scratchBag = -1;
+    }
+
+    boolean isActive(int player) { return active[player]; }
+
+    /** Stops a finished player's cursor from holding slots. */
+    public void release(int player) { active[player] = false; }
+
+    public Tetromino next(int player) {
+        return at(cursors[player]++);
+    }
+
+    public Tetromino peekNext(int player) { return peekNext(player, 0); }
+
+    /** The piece {@code ahead} places after this player's next one (0 = next). */
+    public Tetromino peekNext(int player, int ahead) {
+        return at(cursors[player] + ahead);
+    }
+
+    /** Fills {@code out} with the next {@code out.length} pieces for this player. */
+    public void peekNext(int player, Tetromino[] out) {
+        long c = cursors[player];
+        for (int i = 0; i < out.length; i++) out[i] = at(c + i);
+    }
+
+    private Tetromino at(long pos) {
+        long floor = minActive();
+        while (pos >= written && written + BAG - floor <= ring.length) {
+            shuffle(written / BAG, ring, (int) (written % ring.length));
+            written += BAG;
+        }
+        if (pos < written && pos >= written - ring.length) return ring[(int) (pos % ring.length)];
+        long bag = pos / BAG;
+        if (bag != scratchBag) {
+            shuffle(bag, scratch, 0);
+            scratchBag = bag;
+        }
+        return scratch[(int) (pos % BAG)];
+    }
+
+    private long minActive() {
+        long m = Long.MAX_VALUE;
+        for (int i = 0; i < cursors.length; i++) if (active[i]) m = Math.min(m, cursors[i]);
+        return m == Long.MAX_VALUE ? written : m;
+    }
+
+    private void shuffle(long bag, Tetromino[] dst, int off) {
+        System.arraycopy(PIECES, 0, dst, off, BAG);
+        long s = seed + bag * GOLDEN;
+        for (int i = BAG - 1; i > 0; i--) {
+            s += GOLDEN;
+            int j = (int) ((mix(s) >>> 1) % (i + 1));
+            Tetromino t = dst[off + i];
+            dst[off + i] = dst[off + j];
+            dst[off + j] = t;
+        }
+    }
+
+    // splitmix64 finaliser
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
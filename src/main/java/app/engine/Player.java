@@ -0,0 +1,20 @@
+package app.engine;
+
+public interface Player {
+    int cols();
+    int rows();
+    Board board();
+    int pieceId();
+    int pieceRow();
+    int pieceCol();
+    int pieceRot();
+    PieceGeometry pieceGeometry(int rot);
+    /** The piece {@code ahead} places after the current one (0 = next). */
+    Tetromino peekNext(int ahead);
+    boolean canPlace(int row, int col, int rot);
+    void moveLeft();
+    void moveRight();
+    void softDrop();
+    void hardDrop();
+    void rotate();
+}
@@ -0,0 +1,60 @@
+package app.engine;
+
+public final class PlayerState implements Player {
+    private final Engine engine;
+    final int index;
+    final Board board;
+
+    Tetromino piece;
+    int row, col, rot;
+
+    int score = 0, lines = 0, level, initLevel;
+    boolean clearing = false, dead = false;
+    long dirtyRows = -1L;
+    long clearingRows = 0;
+
+
+    PlayerState(Engine engine, int index, int cols, int rows) {
+        this.engine = engine;
+        this.index = index;
+        this.board = new Board(cols, rows);
+    }
+
+    public int index() { return index; }
+    public Tetromino piece() { return piece; }
+    public int score() { return score; }
+    public int lines() { return lines; }
+    public int level() { return level; }
+    public int initLevel() { return initLevel; }
+    public int gravityMs() { return Engine.gravMs(level); }
+    public boolean isClearing() { return clearing; }
+    public boolean isDead() { return dead; }
+    public long clearingRows() { return clearingRows; }
+    public boolean isRowClearing(int r) { return (clearingRows >>> r & 1) != 0; }
+
+    /** Rows (bit r) whose pixels may have changed since the last call; clears the set. */
+    public long takeDirtyRows() {
+        long d = dirtyRows;
+        dirtyRows = 0;
+        return d;
+    }
+    /** Position of this player's cursor in the shared piece queue. */
+    public long seqIdx() { return engine.queue().cursor(index); }
+    @Override public Tetromino peekNext(int ahead) { return engine.queue().peekNext(index, ahead); }
+
+    @Override public int cols() { return engine.cols(); }
+    @Override public int rows() { return engine.rows(); }
+    @Override public Board board() { return board; }
+    @Override public int pieceId() { return piece == null ? 0 : piece.id(); }
+    @Override public int pieceRow() { return row; }
+    @Override public int pieceCol() { return col; }
+    @Override public int pieceRot() { return rot; }
+    @Override public PieceGeometry pieceGeometry(int r) { return PieceGeometry.of(piece == null ? Tetromino.NONE : piece, r); }
+    @Override public boolean canPlace(int r0, int c0, int r) { return engine.canPlace(this, r0, c0, r); }
+
+    @Override public void moveLeft()  { engine.apply(index, Action.LEFT); }
+    @Override public void moveRight() { engine.apply(index, Action.RIGHT); }
+    @Override public void softDrop()  { engine.apply(index, Action.DOWN); }
+    @Override public void hardDrop()  { engine.apply(index, Action.DROP); }
+    @Override public void rotate()    { engine.apply(index, Action.ROTATE); }
+}
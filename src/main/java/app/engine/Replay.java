@@ -0,0 +1,315 @@
+package app.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A recorded game: the engine's setup plus every input with its play time. The engine
+ * is deterministic given those, so playing the inputs back into a fresh engine on a
+ * {@link ManualClock} reproduces the game exactly, and as fast as the CPU allows when
+ * nothing waits for real time. Checkpoints of the full engine state are embedded every
+ * so often, so seeking only re-simulates from the nearest one before the target.
+ *
+ * <p>File layout: the bytes {@code TRPL}, a format version, the seed as 8 bytes, then
+ * cols, rows, players and start level as varints, then one varint per event holding
+ * (milliseconds since the previous event &lt;&lt; 5 | player &lt;&lt; 3 | code). Codes 0-4 are
+ * actions; 6 is a checkpoint, followed by its length and the engine state; 7 marks the
+ * end of the game. A typical input takes one or two bytes.
+ */
+public final class Replay {
+    private static final byte[] MAGIC = {'T', 'R', 'P', 'L'};
+    private static final int VERSION = 2; // 1 had no checkpoints
+    private static final int CHECKPOINT = 6, END = 7;
+    public static final int MAX_PLAYERS = 4;
+    /** Play time between checkpoints unless the recorder is told otherwise. */
+    public static final long DEFAULT_CHECKPOINT_MS = 30_000;
+
+    private final byte[] data;
+    private final long seed;
+    private final int cols, rows, players, startLevel;
+    private final long[] times;
+    private final byte[] codes; // player << 3 | action
+    private final long endTime;
+    // checkpoint k: play time, index of the first input after it, and where its state is in data
+    private final long[] cpTime;
+    private final int[] cpInput, cpOffset, cpLength;
+
+    private final ManualClock clock = new ManualClock();
+    private Engine engine;
+    private int next;
+
+    private Replay(byte[] data, long seed, int cols, int rows, int players, int startLevel,
+                   long[] times, byte[] codes, long endTime,
+                   long[] cpTime, int[] cpInput, int[] cpOffset, int[] cpLength) {
+        this.data = data;
+        this.seed = seed;
+        this.cols = cols;
+        this.rows = rows;
+        this.players = players;
+        this.startLevel = startLevel;
+        this.times = times;
+        this.codes = codes;
+        this.endTime = endTime;
+        this.cpTime = cpTime;
+        this.cpInput = cpInput;
+        this.cpOffset = cpOffset;
+        this.cpLength = cpLength;
+    }
+
+    public long seed() { return seed; }
+    public int cols() { return cols; }
+    public int rows() { return rows; }
+    public int players() { return players; }
+    public int startLevel() { return startLevel; }
+    public int inputs() { return times.length; }
+    public int checkpoints() { return cpTime.length; }
+    /** Play time the recording stopped at. */
+    public long endTime() { return endTime; }
+
+    /**
+     * Engine the replay drives, started on the first call. It stays the same object
+     * through {@link #restart} and {@link #seek}, so views can hold on to its players.
+     */
+    public Engine engine() {
+        if (engine == null) {
+            engine = new Engine(clock, cols, rows, players, startLevel, seed);
+            restart();
+        }
+        return engine;
+    }
+
+    /** Play time the replay has reached. */
+    public long position() { return engine().playTime(); }
+
+    public boolean finished() { return engine().isOver() || position() >= endTime; }
+
+    /** Starts over from the first input. */
+    public void restart() {
+        Engine e = engine();
+        clock.set(0);
+        e.start();
+        next = 0;
+    }
+
+    /**
+     * Applies every input and timer up to play time {@code t} (clamped to the end).
+     * @return true if any board changed
+     */
+    public boolean advanceTo(long t) {
+        Engine e = engine();
+        t = Math.min(t, endTime);
+        boolean changed = false;
+        while (next < times.length && times[next] <= t && !e.isOver()) {
+            clock.set(times[next]);
+            e.apply(codes[next] >>> 3, Action.of(codes[next] & 7));
+            next++;
+            changed = true;
+        }
+        if (t > clock.millis()) {
+            clock.set(t);
+            changed |= e.step();
+        }
+        return changed;
+    }
+
+    /** Plays the rest of the game without waiting. */
+    public void runToEnd() {
+        advanceTo(endTime);
+    }
+
+    /**
+     * Moves to play time {@code t}, forwards or backwards: restores the last checkpoint
+     * at or before {@code t} (unless simply playing on from here is closer) and
+     * simulates the rest. Listeners see only what happens after the checkpoint.
+     */
+    public void seek(long t) {
+        t = Math.max(0, Math.min(t, endTime));
+        long now = position();
+        int k = lastCheckpointAtOrBefore(t);
+        long from = k < 0 ? 0 : cpTime[k];
+        if (t >= now && from <= now) {
+            advanceTo(t);
+            return;
+        }
+        if (k < 0) {
+            restart();
+        } else {
+            clock.set(cpTime[k]);
+            try {
+                engine().readState(new VarBytes.In(data, cpOffset[k], cpLength[k]));
+            } catch (IOException ex) {
+                throw new UncheckedIOException("corrupt checkpoint at " + cpTime[k] + " ms", ex);
+            }
+            next = cpInput[k];
+        }
+        advanceTo(t);
+    }
+
+    private int lastCheckpointAtOrBefore(long t) {
+        int lo = 0, hi = cpTime.length - 1, found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cpTime[mid] <= t) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // file format
+
+    public static Replay load(Path file) throws IOException {
+        return decode(Files.readAllBytes(file));
+    }
+
+    public static Replay decode(byte[] data) throws IOException {
+        VarBytes.In in = new VarBytes.In(data);
+        for (byte b : MAGIC) if (in.u8() != (b & 0xFF)) throw new IOException("not a replay file");
+        int version = (int) in.varint();
+        if (version < 1 || version > VERSION) throw new IOException("unsupported replay version " + version);
+        long seed = 0;
+        for (int i = 0; i < 8; i++) seed = seed << 8 | in.u8();
+        int cols = (int) in.varint(), rows = (int) in.varint();
+        int players = (int) in.varint(), level = (int) in.varint();
+        if (players < 1 || players > MAX_PLAYERS) throw new IOException("bad player count " + players);
+
+        long[] times = new long[64];
+        byte[] codes = new byte[64];
+        long[] cpTime = new long[8];
+        int[] cpInput = new int[8], cpOffset = new int[8], cpLength = new int[8];
+        int n = 0, cps = 0;
+        long t = 0, end = -1;
+        while (in.more()) {
+            long v = in.varint();
+            t += v >>> 5;
+            int code = (int) (v & 31);
+            int kind = code & 7;
+            if (kind == END) {
+                end = t;
+                break;
+            }
+            if (kind == CHECKPOINT) {
+                int len = (int) in.varint();
+                if (cps == cpTime.length) {
+                    cpTime = Arrays.copyOf(cpTime, cps * 2);
+                    cpInput = Arrays.copyOf(cpInput, cps * 2);
+                    cpOffset = Arrays.copyOf(cpOffset, cps * 2);
+                    cpLength = Arrays.copyOf(cpLength, cps * 2);
+                }
+                cpTime[cps] = t;
+                cpInput[cps] = n;
+                cpOffset[cps] = in.pos();
+                cpLength[cps++] = len;
+                in.skip(len);
+                continue;
+            }
+            if (kind >= Action.values().length) throw new IOException("bad action code " + code);
+            if (n == times.length) {
+                times = Arrays.copyOf(times, n * 2);
+                codes = Arrays.copyOf(codes, n * 2);
+            }
+            times[n] = t;
+            codes[n++] = (byte) code;
+        }
+        if (end < 0) end = t; // cut short; play what's there
+        return new Replay(data, seed, cols, rows, players, level, Arrays.copyOf(times, n), Arrays.copyOf(codes, n), end,
+                Arrays.copyOf(cpTime, cps), Arrays.copyOf(cpInput, cps),
+                Arrays.copyOf(cpOffset, cps), Arrays.copyOf(cpLength, cps));
+    }
+
+    /**
+     * Builds a replay while a game runs: call {@link #input} from the engine's
+     * {@link Engine.Listener#onInput} and {@link #end} when the game stops. Recorders
+     * made with {@link #of} also embed a checkpoint of the engine before the first input
+     * after every {@code checkpointMs} of play.
+     */
+    public static final class Recorder {
+        private final VarBytes.Out out = new VarBytes.Out();
+        private final VarBytes.Out state = new VarBytes.Out();
+        private final Engine engine;
+        private final long checkpointMs;
+        private long last = 0, lastCheckpoint = 0;
+        private int inputs = 0, checkpoints = 0;
+        private boolean ended = false;
+
+        /** Recorder without checkpoints. */
+        public Recorder(long seed, int cols, int rows, int players, int startLevel) {
+            this(null, 0, seed, cols, rows, players, startLevel);
+        }
+
+        private Recorder(Engine engine, long checkpointMs, long seed, int cols, int rows, int players, int startLevel) {
+            if (players < 1 || players > MAX_PLAYERS) throw new IllegalArgumentException("players " + players);
+            this.engine = engine;
+            this.checkpointMs = checkpointMs;
+            for (byte b : MAGIC) out.u8(b);
+            out.varint(VERSION);
+            for (int i = 56; i >= 0; i -= 8) out.u8((int) (seed >>> i));
+            out.varint(cols);
+            out.varint(rows);
+            out.varint(players);
+            out.varint(startLevel);
+        }
+
+        /** Recorder for a game about to be started on {@code e}, with default checkpoint spacing. */
+        public static Recorder of(Engine e, int startLevel) {
+            return of(e, startLevel, DEFAULT_CHECKPOINT_MS);
+        }
+
+        /**
+         * @param checkpointMs play time between checkpoints; shorter seeks faster, longer
+         *                     keeps files smaller; 0 or less records none
+         */
+        public static Recorder of(Engine e, int startLevel, long checkpointMs) {
+            return new Recorder(checkpointMs > 0 ? e : null, checkpointMs,
+                    e.queue().seed(), e.cols(), e.rows(), e.playerCount(), startLevel);
+        }
+
+        public void input(long playTime, int player, Action a) {
+            if (ended) return;
+            if (engine != null && playTime - lastCheckpoint >= checkpointMs) checkpoint(playTime);
+            event(playTime, player << 3 | a.ordinal());
+            inputs++;
+        }
+
+        public void end(long playTime) {
+            if (ended) return;
+            event(playTime, END);
+            ended = true;
+        }
+
+        public boolean isEnded() { return ended; }
+        public int inputs() { return inputs; }
+        public int checkpoints() { return checkpoints; }
+        /** Bytes written so far. */
+        public int size() { return out.size(); }
+
+        public byte[] toByteArray() { return out.toByteArray(); }
+
+        public void save(Path file) throws IOException {
+            Files.write(file, toByteArray());
+        }
+
+        // the engine is between timers and this input, exactly where playback will be
+        private void checkpoint(long playTime) {
+            state.reset();
+            engine.writeState(state);
+            event(playTime, CHECKPOINT);
+            out.varint(state.size());
+            out.bytes(state.toByteArray(), 0, state.size());
+            lastCheckpoint = playTime;
+            checkpoints++;
+        }
+
+        private void event(long t, int code) {
+            long dt = Math.max(0, t - last);
+            last += dt;
+            out.varint(dt << 5 | code);
+        }
+    }
+}
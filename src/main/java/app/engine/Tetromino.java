@@ -0,0 +1,25 @@
+package app.engine;
+
+import app.Piece;
+
+public enum Tetromino implements Piece {
+    NONE(0, new int[][]{{0,0,0,0},{0,0,0,0},{0,0,0,0},{0,0,0,0}}),
+    I(1, new int[][]{{0,0,0,0},{1,1,1,1},{0,0,0,0},{0,0,0,0}}),
+    O(2, new int[][]{{0,1,1,0},{0,1,1,0},{0,0,0,0},{0,0,0,0}}),
+    T(3, new int[][]{{0,1,0,0},{1,1,1,0},{0,0,0,0},{0,0,0,0}}),
+    S(4, new int[][]{{0,1,1,0},{1,1,0,0},{0,0,0,0},{0,0,0,0}}),
+    Z(5, new int[][]{{1,1,0,0},{0,1,1,0},{0,0,0,0},{0,0,0,0}}),
+    J(6, new int[][]{{1,0,0,0},{1,1,1,0},{0,0,0,0},{0,0,0,0}}),
+    L(7, new int[][]{{0,0,1,0},{1,1,1,0},{0,0,0,0},{0,0,0,0}});
+
+    private final int id;
+    private final int[][] base;
+    Tetromino(int id, int[][] base) { this.id = id; this.base = base; }
+    public int id() { return id; }
+    int[][] base() { return base; }
+    public PieceGeometry geometry(int rot) { return PieceGeometry.of(this, rot); }
+    /** Cached matrix from the geometry atlas; shared, do not modify. */
+    public int[][] shape(int rot) { return PieceGeometry.of(this, rot).shape(); }
+    /** One bit per column (bit 0 = leftmost) for each of the 4 shape rows; shared, do not modify. */
+    public int[] rowMasks(int rot) { return PieceGeometry.of(this, rot).rowMasks(); }
+}
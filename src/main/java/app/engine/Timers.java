@@ -0,0 +1,118 @@
+package app.engine;
+
+import java.util.Arrays;
+
+/**
+ * Deadline heap over a fixed set of timer slots, one per (player, kind). Scheduling,
+ * rescheduling and cancelling only move ints around inside preallocated arrays, so
+ * the engine's timed events never allocate. Ties on the same deadline pop in slot
+ * order, which keeps replays deterministic.
+ */
+final class Timers {
+    static final int GRAVITY = 0, LOCK = 1, CLEAR = 2;
+    static final int KINDS = 3;
+
+    private final long[] deadline;
+    private final int[] heap;
+    private final int[] pos;
+    private int size = 0;
+
+    Timers(int players) {
+        int slots = players * KINDS;
+        deadline = new long[slots];
+        heap = new int[slots];
+        pos = new int[slots];
+        clear();
+    }
+
+    static int slot(int player, int kind) { return player * KINDS + kind; }
+    static int player(int slot) { return slot / KINDS; }
+    static int kind(int slot) { return slot % KINDS; }
+
+    void clear() {
+        size = 0;
+        Arrays.fill(pos, -1);
+        Arrays.fill(deadline, -1);
+    }
+
+    boolean isScheduled(int slot) { return pos[slot] >= 0; }
+    long deadline(int slot) { return deadline[slot]; }
+
+    void schedule(int slot, long at) {
+        deadline[slot] = at;
+        int i = pos[slot];
+        if (i < 0) {
+            i = size++;
+            heap[i] = slot;
+            pos[slot] = i;
+            up(i);
+        } else {
+            up(i);
+            down(pos[slot]);
+        }
+    }
+
+    void cancel(int slot) {
+        int i = pos[slot];
+        if (i < 0) return;
+        deadline[slot] = -1;
+        pos[slot] = -1;
+        int last = heap[--size];
+        if (i == size) return;
+        heap[i] = last;
+        pos[last] = i;
+        up(i);
+        down(pos[last]);
+    }
+
+    /** Earliest pending deadline, or Long.MAX_VALUE when nothing is scheduled. */
+    long nextDeadline() { return size == 0 ? Long.MAX_VALUE : deadline[heap[0]]; }
+
+    /** Removes and returns the earliest slot due at or before {@code now}, or -1. */
+    int pollDue(long now) {
+        if (size == 0 || deadline[heap[0]] > now) return -1;
+        int s = heap[0];
+        cancel(s);
+        return s;
+    }
+
+    /** Moves every pending deadline by {@code d}; used to freeze time while paused. */
+    void shift(long d) {
+        for (int i = 0; i < size; i++) deadline[heap[i]] += d;
+    }
+
+    private boolean less(int a, int b) {
+        long da = deadline[a], db = deadline[b];
+        return da < db || (da == db && a < b);
+    }
+
+    private void up(int i) {
+        int s = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int ps = heap[parent];
+            if (!less(s, ps)) break;
+            heap[i] = ps;
+            pos[ps] = i;
+            i = parent;
+        }
+        heap[i] = s;
+        pos[s] = i;
+    }
+
+    private void down(int i) {
+        int s = heap[i];
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= size) break;
+            int r = l + 1;
+            int c = (r < size && less(heap[r], heap[l])) ? r : l;
+            if (!less(heap[c], s)) break;
+            heap[i] = heap[c];
+            pos[heap[i]] = i;
+            i = c;
+        }
+        heap[i] = s;
+        pos[s] = i;
+    }
+}
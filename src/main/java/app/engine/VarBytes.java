@@ -0,0 +1,84 @@
+package app.engine;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Byte buffer and reader for the engine's compact binary formats: unsigned LEB128
+ * varints, zigzag for values that may be negative, and raw bytes.
+ */
+final class VarBytes {
+    private VarBytes() {}
+
+    static final class Out {
+        private byte[] buf = new byte[256];
+        private int len = 0;
+
+        void u8(int b) {
+            if (len == buf.length) buf = Arrays.copyOf(buf, len * 2);
+            buf[len++] = (byte) b;
+        }
+
+        void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                u8((int) (v & 0x7F | 0x80));
+                v >>>= 7;
+            }
+            u8((int) v);
+        }
+
+        void zigzag(long v) { varint(v << 1 ^ v >> 63); }
+
+        void bytes(byte[] b, int off, int n) {
+            if (len + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+            System.arraycopy(b, off, buf, len, n);
+            len += n;
+        }
+
+        int size() { return len; }
+        void reset() { len = 0; }
+        byte[] toByteArray() { return Arrays.copyOf(buf, len); }
+    }
+
+    static final class In {
+        private final byte[] data;
+        private final int end;
+        private int pos;
+
+        In(byte[] data) { this(data, 0, data.length); }
+
+        In(byte[] data, int off, int len) {
+            this.data = data;
+            this.pos = off;
+            this.end = off + len;
+        }
+
+        boolean more() { return pos < end; }
+        int pos() { return pos; }
+
+        void skip(int n) throws IOException {
+            if (n < 0 || pos + n > end) throw new IOException("truncated");
+            pos += n;
+        }
+
+        int u8() throws IOException {
+            if (pos >= end) throw new IOException("truncated");
+            return data[pos++] & 0xFF;
+        }
+
+        long varint() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = u8();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("bad varint");
+        }
+
+        long zigzag() throws IOException {
+            long v = varint();
+            return v >>> 1 ^ -(v & 1);
+        }
+    }
+}